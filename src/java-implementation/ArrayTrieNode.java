@@ -0,0 +1,111 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * TrieNode that keeps its children in a sorted char[] of edge labels with a parallel
+ * array of child nodes. No map, no entries and no boxed Character keys: a node with
+ * b children costs two small arrays, and lookups are a binary search over b chars.
+ * Arrays are sized exactly, so adding a child copies them; fine for the small fan-out
+ * of natural-language tries.
+ */
+public class ArrayTrieNode extends TrieNode {
+    private static final char[] NO_LABELS = new char[0];
+    private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+    
+    private char[] labels;
+    private TrieNode[] nodes;
+    
+    public ArrayTrieNode() {
+        this(true);
+    }
+    
+    public ArrayTrieNode(boolean keepTopWords) {
+        super(keepTopWords);
+        this.labels = NO_LABELS;
+        this.nodes = NO_CHILDREN;
+    }
+    
+    @Override
+    TrieNode child(char ch) {
+        int index = Arrays.binarySearch(labels, ch);
+        return index >= 0 ? nodes[index] : null;
+    }
+    
+    @Override
+    TrieNode addChild(char ch, TrieNode child) {
+        int index = Arrays.binarySearch(labels, ch);
+        if (index >= 0) {
+            nodes[index] = child;
+            return child;
+        }
+        
+        int position = -index - 1;
+        char[] newLabels = new char[labels.length + 1];
+        TrieNode[] newNodes = new TrieNode[nodes.length + 1];
+        System.arraycopy(labels, 0, newLabels, 0, position);
+        System.arraycopy(nodes, 0, newNodes, 0, position);
+        newLabels[position] = ch;
+        newNodes[position] = child;
+        System.arraycopy(labels, position, newLabels, position + 1, labels.length - position);
+        System.arraycopy(nodes, position, newNodes, position + 1, nodes.length - position);
+        labels = newLabels;
+        nodes = newNodes;
+        return child;
+    }
+    
+    @Override
+    TrieNode removeChild(char ch) {
+        int index = Arrays.binarySearch(labels, ch);
+        if (index < 0) return null;
+        
+        TrieNode removed = nodes[index];
+        if (nodes.length == 1) {
+            labels = NO_LABELS;
+            nodes = NO_CHILDREN;
+            return removed;
+        }
+        char[] newLabels = new char[labels.length - 1];
+        TrieNode[] newNodes = new TrieNode[nodes.length - 1];
+        System.arraycopy(labels, 0, newLabels, 0, index);
+        System.arraycopy(nodes, 0, newNodes, 0, index);
+        System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+        System.arraycopy(nodes, index + 1, newNodes, index, nodes.length - index - 1);
+        labels = newLabels;
+        nodes = newNodes;
+        return removed;
+    }
+    
+    @Override
+    int childCount() {
+        return nodes.length;
+    }
+    
+    @Override
+    Iterable<TrieNode> children() {
+        return Arrays.asList(nodes);
+    }
+    
+    @Override
+    void forEachChild(ChildVisitor visitor) {
+        for (int i = 0; i < nodes.length; i++) {
+            visitor.visit(labels[i], nodes[i]);
+        }
+    }
+    
+    @Override
+    void forEachChildDescending(ChildVisitor visitor) {
+        // Labels are already sorted
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            visitor.visit(labels[i], nodes[i]);
+        }
+    }
+    
+    @Override
+    long shallowBytes() {
+        // Childless nodes share the empty arrays
+        long arrays = nodes.length == 0 ? 0
+                : HeapEstimate.array(2, labels.length) + HeapEstimate.array(HeapEstimate.REFERENCE, nodes.length);
+        return HeapEstimate.align(HeapEstimate.HEADER + 25) + arrays;
+    }
+}
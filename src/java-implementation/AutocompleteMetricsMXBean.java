@@ -0,0 +1,31 @@
+package autocomplete;
+
+/**
+ * JMX view of an AutocompleteSystem's instrumentation, registered with
+ * AutocompleteSystem.registerMBean. Latencies are in nanoseconds.
+ */
+public interface AutocompleteMetricsMXBean {
+    boolean isEnabled();
+    
+    long getSuggestionCount();
+    
+    long getSuggestionP50Nanos();
+    
+    long getSuggestionP99Nanos();
+    
+    long getSelectionCount();
+    
+    long getSelectionP99Nanos();
+    
+    long getAddWordCount();
+    
+    long getAddWordP99Nanos();
+    
+    double getMeanNodesVisited();
+    
+    double getMeanCandidates();
+    
+    long getNodeCount();
+    
+    long getEstimatedHeapBytes();
+}
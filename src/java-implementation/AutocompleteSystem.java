@@ -1,20 +1,172 @@
 package autocomplete;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
- * Autocomplete System with learning capability
+ * Autocomplete System with learning capability.
+ * History and usage statistics are thread-safe; the system as a whole is safe for
+ * concurrent use when the index is (see ConcurrentTrie and concurrent()).
  */
-public class AutocompleteSystem {
-    private Trie trie;
-    private List<String> searchHistory;
-    private Map<String, Integer> wordUsageStats;
+public class AutocompleteSystem implements AutoCloseable {
+    private PrefixIndex trie;
+    // Defaults for usage tracking: counts within 0.1% of all selections with 99% probability
+    private static final int HISTORY_CAPACITY = 50;
+    private static final double USAGE_EPSILON = 0.001;
+    private static final double USAGE_DELTA = 0.01;
+    private static final int TRACKED_WORDS = 256;
+    // Nodes compacted after each delete, so memory is given back a little at a time
+    private static final int COMPACTION_STEP = 64;
+    
+    private volatile RingBuffer<String> searchHistory;
+    private volatile CountMinSketch usageCounts;
+    private volatile SpaceSaving topSelections;
+    private volatile SelectionPipeline selectionPipeline;
+    private volatile SuggestionCache suggestionCache;
+    private final EngineMetrics metrics = EngineMetrics.ENABLED ? new EngineMetrics() : null;
+    private volatile ObjectName mbeanName;
     
     public AutocompleteSystem() {
-        this.trie = new Trie();
-        this.searchHistory = new ArrayList<>();
-        this.wordUsageStats = new HashMap<>();
-        initializeWithDefaultWords();
+        this(Trie.DEFAULT_SUGGESTION_LIMIT);
+    }
+    
+    /**
+     * Create a system that returns at most suggestionLimit suggestions per prefix
+     */
+    public AutocompleteSystem(int suggestionLimit) {
+        this(new Trie(suggestionLimit));
+    }
+    
+    /**
+     * Create a system that serves suggestions from the given index (Trie, RadixTrie, ...)
+     */
+    public AutocompleteSystem(PrefixIndex index) {
+        this(index, true);
+    }
+    
+    private AutocompleteSystem(PrefixIndex index, boolean preloadDefaults) {
+        this.trie = Objects.requireNonNull(index, "index");
+        this.searchHistory = new RingBuffer<>(HISTORY_CAPACITY);
+        this.usageCounts = new CountMinSketch(USAGE_EPSILON, USAGE_DELTA);
+        this.topSelections = new SpaceSaving(TRACKED_WORDS);
+        if (preloadDefaults) {
+            initializeWithDefaultWords();
+        }
+    }
+    
+    /**
+     * Create a system that can be shared by many threads: lock-free suggestions,
+     * CAS frequency updates and per-node locking for structural inserts
+     */
+    public static AutocompleteSystem concurrent(int suggestionLimit) {
+        return new AutocompleteSystem(new ConcurrentTrie(suggestionLimit));
+    }
+    
+    /**
+     * Create a system whose ranking forgets: every selection's weight halves each
+     * halfLifeMillis, so words nobody picks any more drift down the suggestions. The ranks
+     * live in a ConcurrentTrie, so the system is safe for concurrent use.
+     */
+    public static AutocompleteSystem decaying(int suggestionLimit, long halfLifeMillis) {
+        return new AutocompleteSystem(new DecayingIndex(() -> new ConcurrentTrie(suggestionLimit), halfLifeMillis));
+    }
+    
+    /**
+     * Create a system whose words are split by range over shardCount in-process tries;
+     * shard bounds follow the vocabulary when it piles up in one range
+     */
+    public static AutocompleteSystem sharded(int suggestionLimit, int shardCount) {
+        return new AutocompleteSystem(ShardedIndex.local(shardCount, () -> new Trie(suggestionLimit)));
+    }
+    
+    /**
+     * Create a system over ShardServer processes at the given addresses, one shard each.
+     * Searches spanning several shards query them in parallel. The default words are only
+     * preloaded when every shard is empty.
+     */
+    public static AutocompleteSystem connectShards(List<InetSocketAddress> addresses) throws IOException {
+        List<RemoteShard> shards = new ArrayList<>();
+        try {
+            for (InetSocketAddress address : addresses) {
+                shards.add(new RemoteShard(address, 4));
+            }
+        } catch (IOException e) {
+            for (RemoteShard shard : shards) {
+                shard.close();
+            }
+            throw e;
+        }
+        ExecutorService fanOut = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ShardedIndex index = new ShardedIndex(shards, 2.0, fanOut);
+        return new AutocompleteSystem(index, index.wordCount() == 0);
+    }
+    
+    /**
+     * Create a system for read-mostly serving: suggestions come from an immutable snapshot
+     * and writes become visible when the snapshot is republished every refreshMillis
+     */
+    public static AutocompleteSystem snapshotting(int suggestionLimit, long refreshMillis) {
+        SnapshotIndex index = new SnapshotIndex(suggestionLimit, refreshMillis);
+        AutocompleteSystem system = new AutocompleteSystem(index);
+        index.publish(); // make the preloaded words visible immediately
+        return system;
+    }
+    
+    /**
+     * Start from a snapshot file written by saveSnapshot. The file is memory-mapped and
+     * searched in place, so startup does not depend on its size. Writes are collected and
+     * published into heap snapshots every refreshMillis, like snapshotting().
+     * suggestionLimit &lt;= 0 keeps the limit stored in the file.
+     */
+    public static AutocompleteSystem openSnapshot(Path file, int suggestionLimit, long refreshMillis) throws IOException {
+        MappedTrie mapped = MappedTrie.open(file, suggestionLimit);
+        return new AutocompleteSystem(new SnapshotIndex(mapped, mapped.getSuggestionLimit(), refreshMillis), false);
+    }
+    
+    /**
+     * Start from a dictionary file sorted by word, compiled into a WordAutomaton (shared
+     * prefixes and suffixes, no word strings). Writes are published into heap snapshots
+     * every refreshMillis, like snapshotting().
+     */
+    public static AutocompleteSystem compiled(Path sortedFile, int suggestionLimit, long refreshMillis) throws IOException {
+        WordAutomaton automaton = WordAutomaton.compile(sortedFile, suggestionLimit);
+        return new AutocompleteSystem(new SnapshotIndex(automaton, suggestionLimit, refreshMillis), false);
+    }
+    
+    /**
+     * Save every word with its current (learned) frequency as a snapshot file for openSnapshot
+     */
+    public void saveSnapshot(Path file) throws IOException {
+        if (trie instanceof SnapshotIndex) {
+            ((SnapshotIndex) trie).publish();
+        }
+        MappedTrie.write(trie, file);
+    }
+    
+    /**
+     * Create a system whose words and learned frequencies survive restarts: every write is
+     * logged to directory with group commit (fsync every 20 ms or 512 records) and the log
+     * compacts itself into a checkpoint past 64 MB. The words live in a ConcurrentTrie, so
+     * the system is safe for concurrent use. The default words are only preloaded into an
+     * empty directory.
+     */
+    public static AutocompleteSystem durable(Path directory, int suggestionLimit,
+                                             FrequencyLog.Durability durability) throws IOException {
+        FrequencyLog log = new FrequencyLog(directory, 20, 512, durability);
+        DurableIndex index = new DurableIndex(new ConcurrentTrie(suggestionLimit), log, 64L << 20);
+        return new AutocompleteSystem(index, index.getAllWords().isEmpty());
     }
     
     /**
@@ -82,28 +234,201 @@ public class AutocompleteSystem {
         System.out.println("System initialized with " + defaultWords.length + " words");
     }
     
+    /**
+     * Bulk-load a word/frequency file (TSV or CSV) on top of the current words
+     */
+    public DictionaryLoader.LoadReport loadDictionary(Path file) throws IOException {
+        DictionaryLoader.LoadReport report = new DictionaryLoader().load(file, trie);
+        SuggestionCache cache = suggestionCache;
+        if (cache != null) {
+            cache.clear(); // a bulk load can touch any prefix
+        }
+        System.out.println(report);
+        return report;
+    }
+    
     /**
      * Get suggestions for a prefix
      */
     public List<WordFrequency> getSuggestions(String prefix) {
+        if (!EngineMetrics.ENABLED) return lookupSuggestions(prefix);
+        long start = System.nanoTime();
+        List<WordFrequency> suggestions = lookupSuggestions(prefix);
+        metrics.suggestions.record(System.nanoTime() - start);
+        return suggestions;
+    }
+    
+    private List<WordFrequency> lookupSuggestions(String prefix) {
         if (prefix == null || prefix.trim().isEmpty()) {
             return new ArrayList<>();
         }
+        SuggestionCache cache = suggestionCache;
+        if (cache != null) {
+            return new ArrayList<>(cache.get(prefix, trie::search));
+        }
         return trie.search(prefix);
     }
     
+    /**
+     * Suggestions for many prefixes at once (form fields, prefetching the next keystrokes),
+     * keyed by the prefixes as given; each list equals getSuggestions(prefix). A Trie
+     * index answers the whole batch in one walk over the shared paths (Trie.searchAll).
+     */
+    public Map<String, List<WordFrequency>> getSuggestions(Collection<String> prefixes) {
+        if (!(trie instanceof Trie) || suggestionCache != null) {
+            Map<String, List<WordFrequency>> results = new LinkedHashMap<>();
+            for (String prefix : prefixes) {
+                results.put(prefix, getSuggestions(prefix));
+            }
+            return results;
+        }
+        
+        List<String> searchable = new ArrayList<>();
+        for (String prefix : prefixes) {
+            if (prefix != null && !prefix.trim().isEmpty()) {
+                searchable.add(prefix);
+            }
+        }
+        Map<String, List<WordFrequency>> found = ((Trie) trie).searchAll(searchable);
+        Map<String, List<WordFrequency>> results = new LinkedHashMap<>();
+        for (String prefix : prefixes) {
+            List<WordFrequency> suggestions = found.get(prefix);
+            results.put(prefix, suggestions != null ? suggestions : new ArrayList<>());
+        }
+        return results;
+    }
+    
+    /**
+     * Typo-tolerant suggestions: words starting within maxEdits edits of prefix, closest
+     * first. Only a Trie index supports this; other indexes return no corrections.
+     */
+    public List<WordFrequency> getFuzzySuggestions(String prefix, int maxEdits) {
+        if (prefix == null || prefix.trim().isEmpty() || !(trie instanceof Trie)) {
+            return new ArrayList<>();
+        }
+        return ((Trie) trie).fuzzySearch(prefix, maxEdits);
+    }
+    
+    /**
+     * Put a bounded LRU cache of capacity prefixes in front of getSuggestions. Writes
+     * invalidate only the cached prefixes of the word they change.
+     */
+    public synchronized void enableSuggestionCache(int capacity) {
+        if (suggestionCache != null) {
+            throw new IllegalStateException("The suggestion cache is already enabled");
+        }
+        SuggestionCache cache = new SuggestionCache(capacity);
+        if (trie instanceof SnapshotIndex) {
+            // Writes only show up in search once published, so invalidate at publish time
+            ((SnapshotIndex) trie).setPublishListener(words -> words.forEach(cache::invalidate));
+        }
+        suggestionCache = cache;
+    }
+    
+    /**
+     * The suggestion cache with its hit/miss/eviction counters, or null when disabled
+     */
+    public SuggestionCache getSuggestionCache() {
+        return suggestionCache;
+    }
+    
+    private void invalidateSuggestions(String word) {
+        SuggestionCache cache = suggestionCache;
+        if (cache != null) {
+            cache.invalidate(word);
+        }
+    }
+    
     /**
      * Select a suggestion (increases its frequency for learning)
      */
     public void selectSuggestion(String word) {
-        trie.updateFrequency(word, 1);
-        searchHistory.add(0, word);
-        if (searchHistory.size() > 50) {
-            searchHistory.remove(searchHistory.size() - 1);
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+        SelectionPipeline pipeline = selectionPipeline;
+        if (pipeline != null) {
+            pipeline.submit(word);
+        } else {
+            applySelections(Collections.singletonMap(word, 1), Collections.singletonList(word));
+        }
+        if (EngineMetrics.ENABLED) metrics.selections.record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Apply selections: one frequency update per distinct word, then history and statistics
+     */
+    private void applySelections(Map<String, Integer> deltas, List<String> selections) {
+        for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+            trie.updateFrequency(delta.getKey(), delta.getValue());
+            invalidateSuggestions(delta.getKey());
+        }
+        RingBuffer<String> history = searchHistory;
+        for (String word : selections) {
+            history.add(word);
         }
         
         // Update usage statistics
-        wordUsageStats.merge(word, 1, Integer::sum);
+        for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+            recordUsage(delta.getKey(), delta.getValue());
+        }
+    }
+    
+    private void recordUsage(String word, int count) {
+        // Usage only counts up; negative frequency adjustments are not selections
+        if (count <= 0) return;
+        usageCounts.add(word, count);
+        topSelections.add(word, count);
+    }
+    
+    /**
+     * Replace the history and usage statistics with empty ones of the given size: the last
+     * historyCapacity selections, usage counts that overcount by at most epsilon times the
+     * total selections with probability 1 - delta, and the trackedWords most selected
+     * words. Memory depends only on these, never on traffic.
+     */
+    public void configureUsageTracking(int historyCapacity, double epsilon, double delta, int trackedWords) {
+        RingBuffer<String> history = new RingBuffer<>(historyCapacity);
+        CountMinSketch counts = new CountMinSketch(epsilon, delta);
+        SpaceSaving top = new SpaceSaving(trackedWords);
+        searchHistory = history;
+        usageCounts = counts;
+        topSelections = top;
+    }
+    
+    /**
+     * How often word was selected: never less than the true count (see CountMinSketch)
+     */
+    public long getUsageCount(String word) {
+        return usageCounts.estimate(word);
+    }
+    
+    /**
+     * The n most selected words with their counts and error bounds (see SpaceSaving)
+     */
+    public List<SpaceSaving.Counter> getTopSelections(int n) {
+        return topSelections.top(n);
+    }
+    
+    /**
+     * Route selectSuggestion through a bounded queue and a background thread that applies
+     * selections in batches. Suggestions are read while batches are written, so use an index
+     * that is safe for that (ConcurrentTrie, SnapshotIndex).
+     */
+    public synchronized void enableAsyncSelections(int capacity, int maxBatch,
+                                                   SelectionPipeline.BackpressurePolicy policy) {
+        if (selectionPipeline != null) {
+            throw new IllegalStateException("Async selections are already enabled");
+        }
+        selectionPipeline = new SelectionPipeline(capacity, maxBatch, policy, this::applySelections);
+    }
+    
+    /**
+     * Wait until every selection made so far is reflected in suggestions and statistics
+     */
+    public void flushSelections() throws InterruptedException {
+        SelectionPipeline pipeline = selectionPipeline;
+        if (pipeline != null) {
+            pipeline.flush();
+        }
     }
     
     /**
@@ -111,23 +436,64 @@ public class AutocompleteSystem {
      */
     public void updateFrequency(String word, int increment) {
         trie.updateFrequency(word, increment);
-        wordUsageStats.merge(word, increment, Integer::sum);
+        invalidateSuggestions(word);
+        recordUsage(word, increment);
     }
     
     /**
      * Add a new word to the system
      */
     public void addWord(String word, int frequency) {
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
         trie.insert(word, frequency);
+        invalidateSuggestions(word);
+        if (EngineMetrics.ENABLED) metrics.additions.record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Remove a word (retired or abusive terms); false if it was not there. Only a Trie
+     * index supports deletes.
+     */
+    public boolean deleteWord(String word) {
+        Trie index = deletableIndex();
+        boolean deleted = index.delete(word);
+        if (deleted) {
+            invalidateSuggestions(word);
+            index.compact(COMPACTION_STEP);
+        }
+        return deleted;
+    }
+    
+    /**
+     * Remove every word starting with prefix and return how many were removed. Only a
+     * Trie index supports deletes.
+     */
+    public int deleteByPrefix(String prefix) {
+        Trie index = deletableIndex();
+        int deleted = index.deleteByPrefix(prefix);
+        if (deleted > 0) {
+            SuggestionCache cache = suggestionCache;
+            if (cache != null) {
+                // Cached lists of the prefix, of its prefixes and of its extensions all change
+                cache.clear();
+            }
+            index.compact(COMPACTION_STEP);
+        }
+        return deleted;
+    }
+    
+    private Trie deletableIndex() {
+        if (!(trie instanceof Trie)) {
+            throw new UnsupportedOperationException(trie.getClass().getSimpleName() + " does not support deletes");
+        }
+        return (Trie) trie;
     }
     
     /**
      * Get search history
      */
     public List<String> getSearchHistory(int limit) {
-        return searchHistory.size() > limit ? 
-               searchHistory.subList(0, limit) : 
-               new ArrayList<>(searchHistory);
+        return searchHistory.newestFirst(limit);
     }
     
     /**
@@ -137,21 +503,171 @@ public class AutocompleteSystem {
         return trie.getAllWords();
     }
     
+    /**
+     * Number of distinct words in the system
+     */
+    public int getWordCount() {
+        return trie.wordCount();
+    }
+    
+    /**
+     * One page of the words starting with prefix ("" for all), continuing after the page
+     * that returned cursor (null for the first page). A Trie index enumerates lazily and
+     * only touches the words on the page; other indexes list everything and page that.
+     */
+    public WordPage getWordPage(String prefix, WordPage.Order order, String cursor, int pageSize) {
+        if (trie instanceof Trie) {
+            return ((Trie) trie).page(prefix, order, cursor, pageSize);
+        }
+        return WordPage.fromAllWords(trie.getAllWords(), prefix, order, cursor, pageSize);
+    }
+    
+    /**
+     * Latency histograms, search counters and index size (see EngineMetrics). Estimating
+     * the heap footprint walks the index, so this costs O(n).
+     */
+    public MetricsSnapshot getMetrics() {
+        return EngineMetrics.snapshot(metrics, trie);
+    }
+    
+    /**
+     * Publish getMetrics() over JMX as autocomplete:type=AutocompleteSystem,name=&lt;name&gt;.
+     * close() unregisters it.
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        if (mbeanName != null) {
+            throw new IllegalStateException("Already registered as " + mbeanName);
+        }
+        ObjectName objectName = new ObjectName("autocomplete:type=AutocompleteSystem,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(this), objectName);
+        mbeanName = objectName;
+        return objectName;
+    }
+    
     /**
      * Get usage statistics
      */
     public void printStatistics() {
         System.out.println("\n=== System Statistics ===");
-        System.out.println("Total words in system: " + getAllWords().size());
+        System.out.println("Total words in system: " + getWordCount());
         System.out.println("Recent searches: " + searchHistory.size());
+        if (suggestionCache != null) {
+            System.out.println("Suggestion cache: " + suggestionCache);
+        }
         
-        if (!wordUsageStats.isEmpty()) {
+        List<SpaceSaving.Counter> top = getTopSelections(5);
+        if (!top.isEmpty()) {
             System.out.println("\nTop 5 most selected words:");
-            wordUsageStats.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(5)
-                .forEach(entry -> System.out.println("  - " + entry.getKey() + 
-                                                     " (selected " + entry.getValue() + " times)"));
+            for (SpaceSaving.Counter counter : top) {
+                System.out.println("  - " + counter.getKey() + " (selected "
+                                   + (counter.getError() > 0 ? "about " : "") + counter.getCount() + " times)");
+            }
+        }
+    }
+    
+    /**
+     * Apply queued selections, then release the index's resources (background threads, logs)
+     */
+    @Override
+    public void close() throws IOException {
+        ObjectName registered = mbeanName;
+        if (registered != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            } catch (JMException e) {
+                System.err.println("Could not unregister " + registered + ": " + e.getMessage());
+            }
+            mbeanName = null;
+        }
+        SelectionPipeline pipeline = selectionPipeline;
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        if (trie instanceof Closeable) {
+            ((Closeable) trie).close();
+        }
+    }
+    
+    /**
+     * MXBean over getMetrics(). JMX clients read attributes one by one, so a snapshot is
+     * reused for a second instead of walking the index for every attribute.
+     */
+    private static final class MetricsBean implements AutocompleteMetricsMXBean {
+        private final AutocompleteSystem system;
+        private MetricsSnapshot snapshot;
+        private long takenAt;
+        
+        MetricsBean(AutocompleteSystem system) {
+            this.system = system;
+        }
+        
+        private synchronized MetricsSnapshot snapshot() {
+            long now = System.nanoTime();
+            if (snapshot == null || now - takenAt > 1_000_000_000L) {
+                snapshot = system.getMetrics();
+                takenAt = now;
+            }
+            return snapshot;
+        }
+        
+        @Override
+        public boolean isEnabled() {
+            return snapshot().isEnabled();
+        }
+        
+        @Override
+        public long getSuggestionCount() {
+            return snapshot().getSuggestionLatency().getCount();
+        }
+        
+        @Override
+        public long getSuggestionP50Nanos() {
+            return snapshot().getSuggestionLatency().getP50Nanos();
+        }
+        
+        @Override
+        public long getSuggestionP99Nanos() {
+            return snapshot().getSuggestionLatency().getP99Nanos();
+        }
+        
+        @Override
+        public long getSelectionCount() {
+            return snapshot().getSelectionLatency().getCount();
+        }
+        
+        @Override
+        public long getSelectionP99Nanos() {
+            return snapshot().getSelectionLatency().getP99Nanos();
+        }
+        
+        @Override
+        public long getAddWordCount() {
+            return snapshot().getAddWordLatency().getCount();
+        }
+        
+        @Override
+        public long getAddWordP99Nanos() {
+            return snapshot().getAddWordLatency().getP99Nanos();
+        }
+        
+        @Override
+        public double getMeanNodesVisited() {
+            return snapshot().getMeanNodesVisited();
+        }
+        
+        @Override
+        public double getMeanCandidates() {
+            return snapshot().getMeanCandidates();
+        }
+        
+        @Override
+        public long getNodeCount() {
+            return snapshot().getNodeCount();
+        }
+        
+        @Override
+        public long getEstimatedHeapBytes() {
+            return snapshot().getEstimatedHeapBytes();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * The best-first queue of Trie search as reusable parallel arrays, for allocation-free
+ * searches (see ResultSink). Orders entries like Candidate.ORDER: rank descending, then
+ * key ascending. A node entry's key is its path, kept in a pooled char buffer; a word
+ * entry's key is its node's word. Every key of one search starts with the searched
+ * prefix, so keys are stored and compared from the end of the prefix on. Arrays and key
+ * buffers only ever grow, so a warmed-up queue allocates nothing.
+ */
+final class BestFirstQueue implements TrieNode.ChildVisitor {
+    private static final int WORD = -1;
+    
+    // Binary heap of entries: node, rank and key slot (WORD for a finished word)
+    private TrieNode[] nodes = new TrieNode[16];
+    private int[] ranks = new int[16];
+    private int[] slots = new int[16];
+    private int size;
+    
+    // Key buffers by slot; a slot is freed once its node has been expanded
+    private char[][] keys = new char[16][];
+    private int[] keyLengths = new int[16];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+    
+    private int prefixLength;
+    private int polledSlot;
+    
+    /**
+     * Empty the queue for a search below a node reached by prefixLength characters
+     */
+    void reset(int prefixLength) {
+        Arrays.fill(nodes, 0, size, null);
+        size = 0;
+        freeCount = 0;
+        slotCount = 0;
+        this.prefixLength = prefixLength;
+    }
+    
+    boolean isEmpty() {
+        return size == 0;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Queue the node a search starts from (its key is the prefix itself)
+     */
+    void offerStart(TrieNode node) {
+        int slot = newSlot(0);
+        push(node, node.maxFrequency, slot);
+    }
+    
+    /**
+     * Queue a node's own word, ranked by its frequency
+     */
+    void offerWord(TrieNode node) {
+        push(node, node.frequency, WORD);
+    }
+    
+    /**
+     * Take the head entry. It is a finished word if polledWord() is true afterwards;
+     * otherwise it is a node to expand().
+     */
+    TrieNode poll() {
+        TrieNode head = nodes[0];
+        polledSlot = slots[0];
+        size--;
+        move(size, 0);
+        nodes[size] = null;
+        if (size > 0) {
+            siftDown(0);
+        }
+        return head;
+    }
+    
+    boolean polledWord() {
+        return polledSlot == WORD;
+    }
+    
+    /**
+     * Queue the children of the node just polled that still have words below them
+     */
+    void expand(TrieNode node) {
+        node.forEachChild(this);
+        freeSlots[freeCount++] = polledSlot;
+    }
+    
+    @Override
+    public void visit(char label, TrieNode child) {
+        if (child.maxFrequency == Integer.MIN_VALUE) return; // no words below
+        int length = keyLengths[polledSlot];
+        int slot = newSlot(length + 1);
+        char[] key = keys[slot];
+        System.arraycopy(keys[polledSlot], 0, key, 0, length);
+        key[length] = label;
+        push(child, child.maxFrequency, slot);
+    }
+    
+    private int newSlot(int length) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == keys.length) {
+                keys = Arrays.copyOf(keys, slotCount * 2);
+                keyLengths = Arrays.copyOf(keyLengths, slotCount * 2);
+                freeSlots = Arrays.copyOf(freeSlots, slotCount * 2);
+            }
+            slot = slotCount++;
+        }
+        if (keys[slot] == null || keys[slot].length < length) {
+            keys[slot] = new char[Math.max(16, length * 2)];
+        }
+        keyLengths[slot] = length;
+        return slot;
+    }
+    
+    private void push(TrieNode node, int rank, int slot) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            ranks = Arrays.copyOf(ranks, size * 2);
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        nodes[size] = node;
+        ranks[size] = rank;
+        slots[size] = slot;
+        siftUp(size++);
+    }
+    
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!before(index, parent)) return;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+    
+    private void siftDown(int index) {
+        while (true) {
+            int first = index;
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                if (before(child, first)) first = child;
+            }
+            if (first == index) return;
+            swap(index, first);
+            index = first;
+        }
+    }
+    
+    private boolean before(int a, int b) {
+        if (ranks[a] != ranks[b]) {
+            return ranks[a] > ranks[b];
+        }
+        return compareKeys(a, b) < 0;
+    }
+    
+    private int compareKeys(int a, int b) {
+        int lengthA = keyLength(a);
+        int lengthB = keyLength(b);
+        for (int i = 0; i < Math.min(lengthA, lengthB); i++) {
+            char charA = keyChar(a, i);
+            char charB = keyChar(b, i);
+            if (charA != charB) {
+                return charA - charB;
+            }
+        }
+        return lengthA - lengthB;
+    }
+    
+    private int keyLength(int entry) {
+        return slots[entry] == WORD ? nodes[entry].word.length() - prefixLength : keyLengths[slots[entry]];
+    }
+    
+    private char keyChar(int entry, int i) {
+        return slots[entry] == WORD ? nodes[entry].word.charAt(prefixLength + i) : keys[slots[entry]][i];
+    }
+    
+    private void move(int from, int to) {
+        nodes[to] = nodes[from];
+        ranks[to] = ranks[from];
+        slots[to] = slots[from];
+    }
+    
+    private void swap(int a, int b) {
+        TrieNode node = nodes[a];
+        int rank = ranks[a];
+        int slot = slots[a];
+        move(b, a);
+        nodes[b] = node;
+        ranks[b] = rank;
+        slots[b] = slot;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * Best-first queue entry: either an unexpanded node (ranked by its subtree max frequency
+ * and keyed by its path) or a finished word (node == null, ranked by its own frequency).
+ * A node sorts before any word it could still beat, because its key is a prefix of all
+ * its words and its rank bounds their frequencies, so the queue head is always final.
+ */
+class Candidate<N> {
+    static final Comparator<Candidate<?>> ORDER = (a, b) -> {
+        if (b.rank != a.rank) {
+            return Integer.compare(b.rank, a.rank);
+        }
+        return a.key.compareTo(b.key);
+    };
+    
+    final N node;
+    final String key;
+    final int rank;
+    
+    Candidate(N node, String key, int rank) {
+        this.node = node;
+        this.key = key;
+        this.rank = rank;
+    }
+}
@@ -0,0 +1,265 @@
+package autocomplete;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Thread-safe Trie for serving one index to many threads.
+ * 
+ * Reads never lock: children live in ConcurrentHashMaps and the per-node scalars are
+ * volatile. Frequency changes on existing words are single CAS operations. Structural
+ * inserts lock only what they touch: a missing child is created under the bin lock of
+ * its parent's map, and a node turning into a word briefly holds that node's monitor.
+ * 
+ * Search is best-first over each node's subtree max frequency (see Trie.SearchMode).
+ * Bounds are only ever raised, never lowered, so after a decrement a bound may be
+ * higher than needed. That costs some pruning but never changes the ranking. A write
+ * raises the bounds along its path before it publishes the new frequency, so no bound a
+ * search reads is below a frequency already visible and no word is passed over for a
+ * stale bound. A search that races with writers sees each word either before or after
+ * its latest update; a word raised after its node was queued can come out of the queue
+ * late, so the results are sorted by the frequencies seen before they are returned.
+ */
+public class ConcurrentTrie implements PrefixIndex, InstrumentedIndex {
+    private final Node root;
+    private final int suggestionLimit;
+    private final AtomicInteger wordCount = new AtomicInteger();
+    private final SearchStatistics searchStatistics = EngineMetrics.ENABLED ? new SearchStatistics() : null;
+    
+    public ConcurrentTrie() {
+        this(Trie.DEFAULT_SUGGESTION_LIMIT);
+    }
+    
+    public ConcurrentTrie(int suggestionLimit) {
+        if (suggestionLimit < 1) {
+            throw new IllegalArgumentException("suggestionLimit must be positive: " + suggestionLimit);
+        }
+        this.suggestionLimit = suggestionLimit;
+        this.root = new Node();
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+    
+    /**
+     * Number of distinct words, kept as words are added
+     */
+    @Override
+    public int wordCount() {
+        return wordCount.get();
+    }
+    
+    @Override
+    public SearchStatistics searchStatistics() {
+        return searchStatistics;
+    }
+    
+    /**
+     * Number of nodes, including the root. Counted by walking the trie, so O(n).
+     */
+    @Override
+    public int nodeCount() {
+        int count = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            count++;
+            node.children.values().forEach(stack::push);
+        }
+        return count;
+    }
+    
+    @Override
+    public long estimatedHeapBytes() {
+        long bytes = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            bytes += HeapEstimate.align(HeapEstimate.HEADER + 17) + HeapEstimate.CONCURRENT_HASH_MAP
+                    + HeapEstimate.hashEntries(node.children.size(), 8); // new ConcurrentHashMap<>(4)
+            if (node.isEndOfWord) {
+                bytes += HeapEstimate.string(node.word);
+            }
+            node.children.values().forEach(stack::push);
+        }
+        return bytes;
+    }
+    
+    /**
+     * Insert a word with its frequency, keeping the higher of the old and new frequency
+     */
+    @Override
+    public void insert(String word, int frequency) {
+        if (word == null || word.isEmpty()) return;
+        
+        String lowerWord = word.toLowerCase();
+        Node[] path = new Node[lowerWord.length() + 1];
+        Node current = root;
+        path[0] = current;
+        
+        for (int i = 0; i < lowerWord.length(); i++) {
+            current = current.children.computeIfAbsent(lowerWord.charAt(i), key -> new Node());
+            path[i + 1] = current;
+        }
+        
+        apply(path, lowerWord, frequency, true);
+    }
+    
+    /**
+     * Update frequency of an existing word or insert if not exists
+     */
+    @Override
+    public void updateFrequency(String word, int increment) {
+        if (word == null || word.isEmpty()) return;
+        
+        String lowerWord = word.toLowerCase();
+        Node[] path = new Node[lowerWord.length() + 1];
+        Node current = root;
+        path[0] = current;
+        
+        for (int i = 0; i < lowerWord.length(); i++) {
+            current = current.children.get(lowerWord.charAt(i));
+            if (current == null) {
+                // Word doesn't exist, insert it
+                insert(word, increment);
+                return;
+            }
+            path[i + 1] = current;
+        }
+        
+        apply(path, lowerWord, increment, false);
+    }
+    
+    /**
+     * Set the frequency of the last node on path: max(old, value) on insert, old + value
+     * on update. The path's bounds are raised to the new frequency before it is published.
+     */
+    private void apply(Node[] path, String lowerWord, int value, boolean isInsert) {
+        Node node = path[path.length - 1];
+        if (!node.isEndOfWord) {
+            raiseMaxFrequency(path, isInsert ? Math.max(0, value) : value);
+            if (node.becomeWord(lowerWord, value, isInsert) != Integer.MIN_VALUE) {
+                wordCount.incrementAndGet();
+                return;
+            }
+        }
+        // Already a word: raise the bounds to the value the CAS will publish, retry on a race
+        while (true) {
+            int frequency = node.frequency;
+            int updated = isInsert ? Math.max(frequency, value) : frequency + value;
+            raiseMaxFrequency(path, updated);
+            if (Node.FREQUENCY.compareAndSet(node, frequency, updated)) return;
+        }
+    }
+    
+    private static void raiseMaxFrequency(Node[] path, int frequency) {
+        for (Node node : path) {
+            int max = node.maxFrequency;
+            while (frequency > max && !Node.MAX_FREQUENCY.compareAndSet(node, max, frequency)) {
+                max = node.maxFrequency;
+            }
+        }
+    }
+    
+    /**
+     * Search for words with given prefix and return the top K by frequency, without locking
+     */
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        List<WordFrequency> results = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty()) return results;
+        
+        String lowerPrefix = prefix.toLowerCase();
+        Node current = root;
+        for (int i = 0; i < lowerPrefix.length(); i++) {
+            current = current.children.get(lowerPrefix.charAt(i));
+            if (current == null) {
+                if (EngineMetrics.ENABLED) searchStatistics.record(i + 1, 0);
+                return results; // Prefix not found
+            }
+        }
+        
+        PriorityQueue<Candidate<Node>> queue = new PriorityQueue<>(Candidate.ORDER);
+        queue.add(new Candidate<>(current, lowerPrefix, current.maxFrequency));
+        int expanded = 0;
+        
+        while (!queue.isEmpty() && results.size() < suggestionLimit) {
+            Candidate<Node> candidate = queue.poll();
+            if (candidate.node == null) {
+                results.add(new WordFrequency(candidate.key, candidate.rank));
+                continue;
+            }
+            
+            expanded++;
+            Node node = candidate.node;
+            if (node.isEndOfWord) {
+                queue.add(new Candidate<>(null, candidate.key, node.frequency));
+            }
+            for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                int bound = child.getValue().maxFrequency;
+                if (bound == Integer.MIN_VALUE) continue; // no words below yet
+                queue.add(new Candidate<>(child.getValue(), candidate.key + child.getKey(), bound));
+            }
+        }
+        if (EngineMetrics.ENABLED) {
+            searchStatistics.record(lowerPrefix.length() + expanded - 1, results.size() + queue.size());
+        }
+        results.sort(WordFrequency.RANKING); // at most K entries; already ranked without racing writers
+        return results;
+    }
+    
+    /**
+     * Get all words in the Trie (for debugging/statistics)
+     */
+    @Override
+    public List<WordFrequency> getAllWords() {
+        List<WordFrequency> results = new ArrayList<>();
+        collectWords(root, results);
+        results.sort((a, b) -> Integer.compare(b.frequency, a.frequency));
+        return results;
+    }
+    
+    private void collectWords(Node node, List<WordFrequency> results) {
+        if (node.isEndOfWord) {
+            results.add(new WordFrequency(node.word, node.frequency));
+        }
+        for (Node child : node.children.values()) {
+            collectWords(child, results);
+        }
+    }
+    
+    /**
+     * Node with lock-free children and CAS-updated counters
+     */
+    static final class Node {
+        static final AtomicIntegerFieldUpdater<Node> FREQUENCY =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "frequency");
+        static final AtomicIntegerFieldUpdater<Node> MAX_FREQUENCY =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "maxFrequency");
+        
+        final ConcurrentHashMap<Character, Node> children = new ConcurrentHashMap<>(4);
+        volatile boolean isEndOfWord;
+        volatile int frequency;
+        volatile int maxFrequency = Integer.MIN_VALUE;
+        volatile String word = "";
+        
+        /**
+         * Turn this node into a word under its monitor, with the same starting frequency
+         * as Trie: max(0, value) on insert, value itself on update. Returns the new
+         * frequency, or MIN_VALUE if another thread made it a word first.
+         */
+        synchronized int becomeWord(String lowerWord, int value, boolean isInsert) {
+            if (isEndOfWord) return Integer.MIN_VALUE;
+            word = lowerWord;
+            frequency = isInsert ? Math.max(0, value) : value;
+            isEndOfWord = true; // publishes word and frequency to lock-free readers
+            return frequency;
+        }
+    }
+}
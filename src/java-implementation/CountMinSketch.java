@@ -0,0 +1,95 @@
+package autocomplete;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min Sketch: approximate counts for any number of distinct keys in fixed memory.
+ * 
+ * depth = ceil(ln(1 / delta)) rows of width = ceil(e / epsilon) counters; a key adds to
+ * one counter per row and its estimate is the smallest of them. Estimates never
+ * undercount, and with probability at least 1 - delta they overcount by at most
+ * epsilon times the total of all additions. Updates are lock-free (one atomic add per row).
+ */
+public final class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final AtomicLongArray counters;
+    private final AtomicLong total = new AtomicLong();
+    
+    public CountMinSketch(double epsilon, double delta) {
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException("epsilon and delta must be in (0, 1): " + epsilon + ", " + delta);
+        }
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counters = new AtomicLongArray(width * depth);
+    }
+    
+    /**
+     * Add count (which must not be negative) to key
+     */
+    public void add(String key, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        if (count == 0) return;
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            counters.addAndGet(row * width + index(h1, h2, row), count);
+        }
+        total.addAndGet(count);
+    }
+    
+    /**
+     * Estimated count of key: at least its true count
+     */
+    public long estimate(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(row * width + index(h1, h2, row)));
+        }
+        return min;
+    }
+    
+    /**
+     * Sum of every count added
+     */
+    public long total() {
+        return total.get();
+    }
+    
+    public int width() {
+        return width;
+    }
+    
+    public int depth() {
+        return depth;
+    }
+    
+    // Row hashes h1 + row * h2 (Kirsch-Mitzenmacher) behave like independent ones
+    private int index(int h1, int h2, int row) {
+        return Math.floorMod(h1 + row * h2, width);
+    }
+    
+    /**
+     * 64-bit FNV-1a over the key's chars, finished with the MurmurHash3 mixer
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
\ No newline at end of file
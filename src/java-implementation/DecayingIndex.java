@@ -0,0 +1,254 @@
+package autocomplete;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * PrefixIndex decorator that ranks words by an exponentially time-decayed score, so
+ * terms nobody selects any more sink below current ones without any periodic pass.
+ * 
+ * A word's score at time t is the sum of its increments, each multiplied by
+ * 2^(-(t - tUpdate) / halfLife). Scores are kept in forward-decayed form instead:
+ * each word stores log(score at its last update) plus lambda * (update time - landmark),
+ * which is the same for every later t up to one global factor, e^(-lambda * (t - landmark)).
+ * Comparing stored values therefore compares current scores, and a stored value only
+ * changes when its own word is written. A write decays that one word lazily, adds the
+ * increment and moves it in the wrapped index: O(1) per touched word, and the per-node top
+ * K lists and max frequencies of the wrapped index never go stale as time passes.
+ * 
+ * The wrapped index ranks by a fixed-point rank of the stored log (0.1% resolution), and
+ * searches report each word's current score, rounded, as its frequency. Stored logs grow
+ * by ln 2 per half-life; after about a million half-lives the ranks would leave
+ * int range, so the landmark is moved forward, which rebuilds the wrapped index once.
+ * 
+ * Writes of one word are serialized, but writes of different words reach the wrapped
+ * index concurrently and searches read it while they do, so indexFactory must make
+ * thread-safe indexes (ConcurrentTrie) whenever this index is shared by threads.
+ */
+public class DecayingIndex implements PrefixIndex {
+    // Fixed-point ranks: rank = OFFSET + log(score) * RANKS_PER_UNIT, 0 for a zero score
+    private static final double RANKS_PER_UNIT = 1000;
+    private static final long OFFSET = 1L << 30;
+    private static final long MAX_RANK = Integer.MAX_VALUE - (1L << 20);
+    
+    /**
+     * Per-word state: log of the forward-decayed score (NEGATIVE_INFINITY for a zero
+     * score), the rank the wrapped index holds for it and the last write time
+     */
+    static final class DecayState {
+        final double logScore;
+        final int rank;
+        final long lastUpdateMillis;
+        
+        DecayState(double logScore, int rank, long lastUpdateMillis) {
+            this.logScore = logScore;
+            this.rank = rank;
+            this.lastUpdateMillis = lastUpdateMillis;
+        }
+    }
+    
+    /**
+     * The wrapped index, the landmark its ranks are relative to and the word states,
+     * replaced together when the landmark moves
+     */
+    private static final class Generation {
+        final PrefixIndex index;
+        final long landmarkMillis;
+        final ConcurrentHashMap<String, DecayState> states;
+        
+        Generation(PrefixIndex index, long landmarkMillis, ConcurrentHashMap<String, DecayState> states) {
+            this.index = index;
+            this.landmarkMillis = landmarkMillis;
+            this.states = states;
+        }
+    }
+    
+    private final Supplier<? extends PrefixIndex> indexFactory;
+    private final double lambdaPerMilli;
+    private final long halfLifeMillis;
+    private final LongSupplier clock;
+    private final ReentrantReadWriteLock landmarkLock = new ReentrantReadWriteLock();
+    private volatile Generation generation;
+    
+    /**
+     * Decay scores with the given half-life, keeping words in indexes made by indexFactory
+     * (a new one is made whenever the landmark moves; see the class comment on thread safety)
+     */
+    public DecayingIndex(Supplier<? extends PrefixIndex> indexFactory, long halfLifeMillis) {
+        this(indexFactory, halfLifeMillis, System::currentTimeMillis);
+    }
+    
+    DecayingIndex(Supplier<? extends PrefixIndex> indexFactory, long halfLifeMillis, LongSupplier clock) {
+        if (halfLifeMillis < 1) {
+            throw new IllegalArgumentException("halfLifeMillis must be positive: " + halfLifeMillis);
+        }
+        this.indexFactory = Objects.requireNonNull(indexFactory, "indexFactory");
+        this.halfLifeMillis = halfLifeMillis;
+        this.lambdaPerMilli = Math.log(2) / halfLifeMillis;
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.generation = new Generation(indexFactory.get(), clock.getAsLong(), new ConcurrentHashMap<>());
+    }
+    
+    public long getHalfLifeMillis() {
+        return halfLifeMillis;
+    }
+    
+    /**
+     * Raise the word's current score to frequency if it is lower
+     */
+    @Override
+    public void insert(String word, int frequency) {
+        if (word == null || word.isEmpty()) return;
+        write(word.toLowerCase(), current -> Math.max(current, frequency));
+    }
+    
+    /**
+     * Add increment to the word's current (decayed) score; scores never go below zero
+     */
+    @Override
+    public void updateFrequency(String word, int increment) {
+        if (word == null || word.isEmpty()) return;
+        write(word.toLowerCase(), current -> current + increment);
+    }
+    
+    private interface ScoreChange {
+        double apply(double currentScore);
+    }
+    
+    private void write(String word, ScoreChange change) {
+        boolean moveLandmark;
+        landmarkLock.readLock().lock();
+        try {
+            Generation current = generation;
+            long now = clock.getAsLong();
+            double elapsed = lambdaPerMilli * (now - current.landmarkMillis);
+            int[] newRank = new int[1];
+            
+            // compute() serializes writers of one word, so its rank moves exactly once per write
+            current.states.compute(word, (key, state) -> {
+                double score = state == null ? 0 : decayedScore(state.logScore, elapsed);
+                double logScore = forwardLog(Math.max(0, change.apply(score)), elapsed);
+                int rank = rankOf(logScore);
+                if (state == null) {
+                    current.index.insert(key, rank);
+                } else if (rank != state.rank) {
+                    current.index.updateFrequency(key, rank - state.rank);
+                }
+                newRank[0] = rank;
+                return new DecayState(logScore, rank, now);
+            });
+            moveLandmark = newRank[0] >= MAX_RANK;
+        } finally {
+            landmarkLock.readLock().unlock();
+        }
+        if (moveLandmark) {
+            moveLandmark();
+        }
+    }
+    
+    /**
+     * Rebase every stored score on the current time and rebuild the wrapped index. Only
+     * needed once ranks near int range, after about a million half-lives.
+     */
+    private void moveLandmark() {
+        landmarkLock.writeLock().lock();
+        try {
+            Generation old = generation;
+            long now = clock.getAsLong();
+            double shift = lambdaPerMilli * (now - old.landmarkMillis);
+            if (shift <= 0) return;
+            
+            PrefixIndex index = indexFactory.get();
+            ConcurrentHashMap<String, DecayState> states = new ConcurrentHashMap<>(old.states.size() * 2);
+            for (Map.Entry<String, DecayState> entry : old.states.entrySet()) {
+                DecayState state = entry.getValue();
+                double logScore = state.logScore - shift;
+                int rank = rankOf(logScore);
+                index.insert(entry.getKey(), rank);
+                states.put(entry.getKey(), new DecayState(logScore, rank, state.lastUpdateMillis));
+            }
+            generation = new Generation(index, now, states);
+        } finally {
+            landmarkLock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        Generation current = generation;
+        return decayed(current, current.index.search(prefix));
+    }
+    
+    @Override
+    public List<WordFrequency> getAllWords() {
+        Generation current = generation;
+        return decayed(current, current.index.getAllWords());
+    }
+    
+    @Override
+    public int wordCount() {
+        return generation.index.wordCount();
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return generation.index.getSuggestionLimit();
+    }
+    
+    /**
+     * A word's current decayed score, or 0 for an unknown word
+     */
+    public double score(String word) {
+        Generation current = generation;
+        DecayState state = current.states.get(word.toLowerCase());
+        if (state == null) return 0;
+        return decayedScore(state.logScore, lambdaPerMilli * (clock.getAsLong() - current.landmarkMillis));
+    }
+    
+    /**
+     * When the word's score last changed (epoch millis), or -1 for an unknown word
+     */
+    public long lastUpdated(String word) {
+        DecayState state = generation.states.get(word.toLowerCase());
+        return state == null ? -1 : state.lastUpdateMillis;
+    }
+    
+    /**
+     * The wrapped index currently holding the ranks (for statistics only)
+     */
+    PrefixIndex delegate() {
+        return generation.index;
+    }
+    
+    /**
+     * Replace the wrapped index's ranks with current scores; rank order is already the
+     * order of current scores, so the list stays sorted
+     */
+    private List<WordFrequency> decayed(Generation current, List<WordFrequency> ranked) {
+        double elapsed = lambdaPerMilli * (clock.getAsLong() - current.landmarkMillis);
+        List<WordFrequency> results = new ArrayList<>(ranked.size());
+        for (WordFrequency entry : ranked) {
+            DecayState state = current.states.get(entry.word);
+            double score = state == null ? 0 : decayedScore(state.logScore, elapsed);
+            results.add(new WordFrequency(entry.word, (int) Math.min(Integer.MAX_VALUE, Math.round(score))));
+        }
+        return results;
+    }
+    
+    private static double decayedScore(double logScore, double elapsed) {
+        return Math.exp(logScore - elapsed);
+    }
+    
+    private static double forwardLog(double score, double elapsed) {
+        return score > 0 ? Math.log(score) + elapsed : Double.NEGATIVE_INFINITY;
+    }
+    
+    private static int rankOf(double logScore) {
+        if (logScore == Double.NEGATIVE_INFINITY) return 0;
+        long rank = OFFSET + Math.round(logScore * RANKS_PER_UNIT);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, rank));
+    }
+}
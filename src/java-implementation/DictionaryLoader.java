@@ -0,0 +1,246 @@
+package autocomplete;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streaming bulk loader for word/frequency dictionaries.
+ * 
+ * Reads a file line by line, so only a bounded number of batches is ever held in memory.
+ * Each line is "word&lt;TAB&gt;frequency" or "word,frequency"; a missing frequency counts as 1,
+ * and blank lines, '#' comments and lines with an unparsable frequency are skipped.
+ * 
+ * For a Trie target, lines are partitioned by their leading character and every
+ * partition builds its own subtrie on a ForkJoinPool. Batches of one partition are
+ * applied in order by at most one task at a time, different partitions run in parallel.
+ * When the input is exhausted the subtries are grafted under the target's root.
+ * Any other PrefixIndex is filled with plain sequential inserts.
+ */
+public class DictionaryLoader {
+    private static final int BATCH_SIZE = 4096;
+    
+    private final ForkJoinPool pool;
+    
+    public DictionaryLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+    
+    public DictionaryLoader(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool, "pool");
+    }
+    
+    /**
+     * Load a dictionary file into the given index
+     */
+    public LoadReport load(Path file, PrefixIndex target) throws IOException {
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (target instanceof Trie) {
+                return loadParallel(reader, (Trie) target, start);
+            }
+            
+            long lines = 0;
+            long words = 0;
+            String line;
+            Entry entry = new Entry();
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                if (!entry.parse(line)) continue;
+                target.insert(entry.word, entry.frequency);
+                words++;
+            }
+            return new LoadReport(lines, words, System.nanoTime() - start);
+        }
+    }
+    
+    private LoadReport loadParallel(BufferedReader reader, Trie target, long start) throws IOException {
+        // Bound the batches in flight so a fast reader cannot run ahead of the builders
+        int maxInFlight = Math.max(4, pool.getParallelism() * 4);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Map<Character, Partition> partitions = new HashMap<>();
+        
+        long lines = 0;
+        long words = 0;
+        String line;
+        Entry entry = new Entry();
+        try {
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                if (!entry.parse(line)) continue;
+                
+                Partition partition = partitions.computeIfAbsent(entry.word.charAt(0),
+                        key -> new Partition(target, inFlight, failure));
+                if (partition.add(entry.word, entry.frequency)) {
+                    inFlight.acquireUninterruptibly();
+                    partition.submit(pool);
+                }
+                words++;
+            }
+            for (Partition partition : partitions.values()) {
+                if (partition.hasPendingBatch()) {
+                    inFlight.acquireUninterruptibly();
+                    partition.submit(pool);
+                }
+            }
+        } finally {
+            // Wait for every batch, including after a read error, before touching the subtries
+            inFlight.acquireUninterruptibly(maxInFlight);
+            inFlight.release(maxInFlight);
+        }
+        
+        if (failure.get() != null) {
+            throw new IllegalStateException("Dictionary build failed", failure.get());
+        }
+        for (Partition partition : partitions.values()) {
+            target.graft(partition.subtrie);
+        }
+        return new LoadReport(lines, words, System.nanoTime() - start);
+    }
+    
+    /**
+     * One parsed input line, reused across lines
+     */
+    static final class Entry {
+        String word;
+        int frequency;
+        
+        boolean parse(String line) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.charAt(0) == '#') return false;
+            
+            int separator = trimmed.indexOf('\t');
+            if (separator < 0) separator = trimmed.lastIndexOf(',');
+            String rawWord = separator < 0 ? trimmed : trimmed.substring(0, separator).trim();
+            if (rawWord.isEmpty()) return false;
+            
+            if (separator < 0) {
+                frequency = 1;
+            } else {
+                try {
+                    frequency = Integer.parseInt(trimmed.substring(separator + 1).trim());
+                } catch (NumberFormatException e) {
+                    return false; // header row or corrupt line
+                }
+            }
+            word = rawWord.toLowerCase();
+            return true;
+        }
+    }
+    
+    /**
+     * Words sharing one leading character, built into a private subtrie.
+     * Full batches queue up here and a single drain task applies them in order.
+     */
+    private static final class Partition {
+        final Trie subtrie;
+        private final Semaphore inFlight;
+        private final AtomicReference<Throwable> failure;
+        private final ConcurrentLinkedQueue<Batch> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private Batch filling = new Batch();
+        
+        Partition(Trie target, Semaphore inFlight, AtomicReference<Throwable> failure) {
+            this.subtrie = new Trie(target.getSuggestionLimit(), target.getSearchMode(), target.getNodeLayout());
+            this.inFlight = inFlight;
+            this.failure = failure;
+        }
+        
+        /**
+         * Add a word to the batch being filled; true when that batch is full and must be submitted
+         */
+        boolean add(String word, int frequency) {
+            filling.words[filling.size] = word;
+            filling.frequencies[filling.size++] = frequency;
+            return filling.size == BATCH_SIZE;
+        }
+        
+        boolean hasPendingBatch() {
+            return filling.size > 0;
+        }
+        
+        void submit(ForkJoinPool pool) {
+            ready.add(filling);
+            filling = new Batch();
+            if (draining.compareAndSet(false, true)) {
+                pool.execute(this::drain);
+            }
+        }
+        
+        private void drain() {
+            while (true) {
+                Batch batch;
+                while ((batch = ready.poll()) != null) {
+                    try {
+                        for (int i = 0; i < batch.size; i++) {
+                            subtrie.insert(batch.words[i], batch.frequencies[i]);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+                draining.set(false);
+                // A batch queued after the last poll but before the reset would be stranded
+                if (ready.isEmpty() || !draining.compareAndSet(false, true)) return;
+            }
+        }
+    }
+    
+    private static final class Batch {
+        final String[] words = new String[BATCH_SIZE];
+        final int[] frequencies = new int[BATCH_SIZE];
+        int size;
+    }
+    
+    /**
+     * Outcome of a load: how much was read and how fast
+     */
+    public static final class LoadReport {
+        private final long linesRead;
+        private final long wordsLoaded;
+        private final long elapsedNanos;
+        
+        LoadReport(long linesRead, long wordsLoaded, long elapsedNanos) {
+            this.linesRead = linesRead;
+            this.wordsLoaded = wordsLoaded;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public long getLinesRead() {
+            return linesRead;
+        }
+        
+        public long getWordsLoaded() {
+            return wordsLoaded;
+        }
+        
+        public long getSkippedLines() {
+            return linesRead - wordsLoaded;
+        }
+        
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+        
+        public double getWordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : wordsLoaded * 1_000_000_000.0 / elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Loaded %d words from %d lines (%d skipped) in %d ms, %.0f words/s",
+                                 wordsLoaded, linesRead, getSkippedLines(), getElapsedMillis(), getWordsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package autocomplete;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * PrefixIndex decorator that records every insert and frequency change in a
+ * FrequencyLog, so learned ranking survives a crash or restart.
+ * 
+ * Searches go straight to the wrapped index. A write appends to the log and then applies
+ * to the index as one step under its word's stripe lock: a write the log rejects never
+ * reaches the index, writes to the same word are applied in log order (insert and
+ * update do not commute), and writes to different words run in parallel. The wrapped index must therefore be safe
+ * for concurrent writers, like ConcurrentTrie. With Durability.COMMITTED the fsync is
+ * awaited after the stripe is released, so waiting writers still share a group commit.
+ * 
+ * Writes hold a shared checkpoint lock; a checkpoint takes it exclusively for as long as
+ * it needs to capture the words and rotate the log, so the checkpoint matches the log
+ * exactly. When the current log segment outgrows checkpointBytes, the next write
+ * compacts the log into a checkpoint on a background thread.
+ */
+public class DurableIndex implements PrefixIndex, Closeable {
+    private static final int STRIPES = 64;
+    
+    private final PrefixIndex delegate;
+    private final FrequencyLog log;
+    private final long checkpointBytes;
+    private final long recoveredRecords;
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final Object[] stripes = new Object[STRIPES];
+    private final AtomicBoolean checkpointRunning = new AtomicBoolean();
+    private volatile Thread compactor;
+    
+    /**
+     * Replay the log into delegate (which should be empty and thread-safe) and start
+     * logging writes. checkpointBytes &lt;= 0 disables automatic checkpoints.
+     */
+    public DurableIndex(PrefixIndex delegate, FrequencyLog log, long checkpointBytes) throws IOException {
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.log = Objects.requireNonNull(log, "log");
+        this.checkpointBytes = checkpointBytes;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        this.recoveredRecords = log.replay(delegate);
+    }
+    
+    /**
+     * Records replayed from log segments at startup (checkpointed words not included)
+     */
+    public long recoveredRecords() {
+        return recoveredRecords;
+    }
+    
+    /**
+     * The wrapped in-memory index (for statistics; writes must go through this index)
+     */
+    PrefixIndex delegate() {
+        return delegate;
+    }
+    
+    @Override
+    public void insert(String word, int frequency) {
+        if (word == null || word.isEmpty()) return;
+        write(word, () -> {
+            long sequence = log.appendInsert(word, frequency);
+            delegate.insert(word, frequency);
+            return sequence;
+        });
+    }
+    
+    @Override
+    public void updateFrequency(String word, int increment) {
+        if (word == null || word.isEmpty()) return;
+        write(word, () -> {
+            long sequence = log.appendUpdate(word, increment);
+            delegate.updateFrequency(word, increment);
+            return sequence;
+        });
+    }
+    
+    private interface LoggedWrite {
+        /**
+         * Buffer the log record, then apply the write; returns the record's sequence
+         */
+        long run() throws IOException;
+    }
+    
+    private void write(String word, LoggedWrite write) {
+        // Same stripe for every spelling of a word, since the index and log fold case
+        Object stripe = stripes[(word.toLowerCase().hashCode() & 0x7fffffff) % STRIPES];
+        try {
+            long sequence;
+            checkpointLock.readLock().lock();
+            try {
+                synchronized (stripe) {
+                    sequence = write.run();
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            log.awaitCommit(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not log write", e);
+        }
+        
+        if (checkpointBytes > 0 && log.segmentBytes() > checkpointBytes
+                && checkpointRunning.compareAndSet(false, true)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    System.err.println("Log checkpoint failed: " + e.getMessage());
+                } finally {
+                    checkpointRunning.set(false);
+                }
+            }, "frequency-log-checkpoint");
+            thread.setDaemon(true);
+            compactor = thread;
+            thread.start();
+        }
+    }
+    
+    /**
+     * Write the current state as a checkpoint and drop the log segments it replaces.
+     * Writers pause only while the words are captured; searches never pause.
+     */
+    public void checkpoint() throws IOException {
+        List<WordFrequency> words;
+        long number;
+        checkpointLock.writeLock().lock();
+        try {
+            words = delegate.getAllWords();
+            number = log.rotate();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        log.writeCheckpoint(number, words, delegate.getSuggestionLimit());
+    }
+    
+    /**
+     * Block until every write so far is on disk
+     */
+    public void sync() throws IOException {
+        log.sync();
+    }
+    
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        return delegate.search(prefix);
+    }
+    
+    @Override
+    public List<WordFrequency> getAllWords() {
+        return delegate.getAllWords();
+    }
+    
+    @Override
+    public int wordCount() {
+        return delegate.wordCount();
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return delegate.getSuggestionLimit();
+    }
+    
+    /**
+     * Finish any running checkpoint, then flush and close the log
+     */
+    @Override
+    public void close() throws IOException {
+        Thread running = compactor;
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.close();
+    }
+}
@@ -0,0 +1,49 @@
+package autocomplete;
+
+/**
+ * Hot-path instrumentation for an AutocompleteSystem: latency histograms for
+ * getSuggestions, selectSuggestion and addWord, plus the search counters kept by the
+ * index itself (see SearchStatistics).
+ * 
+ * Instrumentation is on unless the JVM starts with -Dautocomplete.metrics=false. The flag
+ * is a static final constant, so with it off the JIT drops every timing call and counter
+ * as dead code and no histogram is allocated: the switch costs nothing at run time.
+ */
+public final class EngineMetrics {
+    public static final boolean ENABLED =
+            !"false".equalsIgnoreCase(System.getProperty("autocomplete.metrics"));
+    
+    final LatencyHistogram suggestions = new LatencyHistogram();
+    final LatencyHistogram selections = new LatencyHistogram();
+    final LatencyHistogram additions = new LatencyHistogram();
+    
+    EngineMetrics() {
+    }
+    
+    /**
+     * Snapshot of the given metrics (null when instrumentation is off) together with the
+     * size of index. Walks the index to estimate its heap footprint, so this is O(n).
+     */
+    static MetricsSnapshot snapshot(EngineMetrics metrics, PrefixIndex index) {
+        if (index instanceof DurableIndex) {
+            index = ((DurableIndex) index).delegate();
+        }
+        if (index instanceof DecayingIndex) {
+            index = ((DecayingIndex) index).delegate();
+        }
+        SearchStatistics search = null;
+        long nodeCount = -1;
+        long heapBytes = -1;
+        if (index instanceof InstrumentedIndex) {
+            InstrumentedIndex instrumented = (InstrumentedIndex) index;
+            search = instrumented.searchStatistics();
+            nodeCount = instrumented.nodeCount();
+            heapBytes = instrumented.estimatedHeapBytes();
+        }
+        return new MetricsSnapshot(metrics != null,
+                metrics == null ? null : metrics.suggestions,
+                metrics == null ? null : metrics.selections,
+                metrics == null ? null : metrics.additions,
+                search, nodeCount, heapBytes);
+    }
+}
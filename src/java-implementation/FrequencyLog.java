@@ -0,0 +1,416 @@
+package autocomplete;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, checksummed write-ahead log of word insertions and frequency deltas,
+ * with group commit.
+ * 
+ * append() only encodes the record into an in-memory buffer. A background flusher
+ * writes the buffer out and fsyncs it every flush interval, or as soon as a batch of
+ * records is waiting, so many appends share one fsync. With Durability.BUFFERED an
+ * append never waits for the disk and a crash loses at most the last unflushed group;
+ * with Durability.COMMITTED an append waits until its group is on disk.
+ * 
+ * A log directory holds numbered segments (wal-N.log) and checkpoints (checkpoint-N.trie,
+ * a MappedTrie snapshot of everything logged before segment N). Recovery loads the
+ * newest checkpoint and replays only the segments from its number on. A record is
+ * [int length][int crc32][byte type][int value][utf-8 word]; replay stops at the first
+ * torn or corrupt record.
+ */
+public class FrequencyLog implements AutoCloseable {
+    /**
+     * When an append counts as done
+     */
+    public enum Durability {
+        // Return as soon as the record is buffered; the flusher syncs it within one interval
+        BUFFERED,
+        // Return once the group containing the record has been fsynced
+        COMMITTED
+    }
+    
+    static final byte INSERT = 1;
+    static final byte UPDATE = 2;
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_RECORD = 1 << 20;
+    
+    private final Path directory;
+    private final long flushIntervalMillis;
+    private final int maxBatchRecords;
+    private final Durability durability;
+    private final Thread flusher;
+    
+    // Guarded by this: records appended but not yet handed to the flusher
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private int pendingRecords;
+    private long appendedSequence;
+    private long durableSequence;
+    private boolean closed;
+    private IOException failure;
+    
+    // Guarded by ioLock (always taken before this): the segment being written
+    private final Object ioLock = new Object();
+    private FileChannel segment;
+    private long segmentNumber;
+    // Written under ioLock, read without it so appenders never wait on an fsync
+    private volatile long segmentBytes;
+    
+    /**
+     * Open (or create) a log directory. Call replay() before the first append.
+     */
+    public FrequencyLog(Path directory, long flushIntervalMillis, int maxBatchRecords, Durability durability) throws IOException {
+        if (flushIntervalMillis < 1 || maxBatchRecords < 1) {
+            throw new IllegalArgumentException("flushIntervalMillis and maxBatchRecords must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBatchRecords = maxBatchRecords;
+        this.durability = Objects.requireNonNull(durability, "durability");
+        this.flusher = new Thread(this::runFlusher, "frequency-log-flusher");
+        this.flusher.setDaemon(true);
+    }
+    
+    /**
+     * Rebuild state into an empty index: newest checkpoint, then every later segment.
+     * Afterwards appends go to a fresh segment. Returns the number of records replayed.
+     */
+    public long replay(PrefixIndex target) throws IOException {
+        long checkpoint = latest(listNumbers("checkpoint-", ".trie"));
+        if (checkpoint >= 0) {
+            for (WordFrequency wf : MappedTrie.open(checkpointPath(checkpoint)).getAllWords()) {
+                target.insert(wf.word, wf.frequency);
+                if (wf.frequency < 0) {
+                    // insert starts new words at max(0, frequency); restore the exact value
+                    target.updateFrequency(wf.word, wf.frequency);
+                }
+            }
+        }
+        
+        long replayed = 0;
+        long last = Math.max(checkpoint, 0);
+        for (long number : listNumbers("wal-", ".log")) {
+            if (number < checkpoint) continue;
+            replayed += replaySegment(segmentPath(number), target);
+            last = Math.max(last, number);
+        }
+        
+        synchronized (ioLock) {
+            openSegment(last + 1);
+        }
+        flusher.start();
+        return replayed;
+    }
+    
+    private long replaySegment(Path file, PrefixIndex target) throws IOException {
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            CRC32 crc = new CRC32();
+            while (true) {
+                header.clear();
+                if (!readFully(channel, header)) break;
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 5 || length > MAX_RECORD) break; // torn or corrupt tail
+                
+                ByteBuffer body = ByteBuffer.allocate(length);
+                if (!readFully(channel, body)) break;
+                crc.reset();
+                crc.update(body.array(), 0, length);
+                if ((int) crc.getValue() != checksum) break;
+                
+                body.flip();
+                byte type = body.get();
+                int value = body.getInt();
+                String word = new String(body.array(), 5, length - 5, StandardCharsets.UTF_8);
+                if (type == INSERT) {
+                    target.insert(word, value);
+                } else if (type == UPDATE) {
+                    target.updateFrequency(word, value);
+                } else {
+                    break;
+                }
+                records++;
+            }
+        }
+        return records;
+    }
+    
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return false;
+        }
+        return true;
+    }
+    
+    public void logInsert(String word, int frequency) throws IOException {
+        awaitCommit(appendInsert(word, frequency));
+    }
+    
+    public void logUpdate(String word, int increment) throws IOException {
+        awaitCommit(appendUpdate(word, increment));
+    }
+    
+    /**
+     * Buffer an insert record without waiting for the disk and return its sequence number
+     * for awaitCommit. Lets a caller order appends under its own lock and wait outside it.
+     */
+    long appendInsert(String word, int frequency) throws IOException {
+        return append(INSERT, word, frequency);
+    }
+    
+    /**
+     * Buffer an update record without waiting for the disk; see appendInsert
+     */
+    long appendUpdate(String word, int increment) throws IOException {
+        return append(UPDATE, word, increment);
+    }
+    
+    /**
+     * With Durability.COMMITTED, block until the record with this sequence number is on
+     * disk; with BUFFERED, return at once
+     */
+    void awaitCommit(long sequence) throws IOException {
+        if (durability == Durability.COMMITTED) {
+            awaitDurable(sequence);
+        }
+    }
+    
+    private long append(byte type, String word, int value) throws IOException {
+        byte[] bytes = word.toLowerCase().getBytes(StandardCharsets.UTF_8);
+        int length = 5 + bytes.length;
+        if (length > MAX_RECORD) {
+            throw new IllegalArgumentException("Word too long for the log: " + bytes.length + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(ByteBuffer.allocate(4).putInt(0, value).array());
+        crc.update(bytes);
+        
+        long sequence;
+        synchronized (this) {
+            if (closed) throw new IOException("FrequencyLog is closed");
+            if (failure != null) throw failure;
+            ensurePending(RECORD_HEADER + length);
+            pending.putInt(length).putInt((int) crc.getValue()).put(type).putInt(value).put(bytes);
+            sequence = ++appendedSequence;
+            if (++pendingRecords >= maxBatchRecords) {
+                notifyAll(); // wake the flusher early for a full batch
+            }
+        }
+        return sequence;
+    }
+    
+    private void ensurePending(int bytes) {
+        if (pending.remaining() >= bytes) return;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+        pending.flip();
+        larger.put(pending);
+        pending = larger;
+    }
+    
+    /**
+     * Block until everything appended so far is on disk
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appendedSequence;
+            notifyAll();
+        }
+        awaitDurable(target);
+    }
+    
+    private synchronized void awaitDurable(long sequence) throws IOException {
+        boolean interrupted = false;
+        while (durableSequence < sequence && failure == null && flusher.isAlive()) {
+            try {
+                wait(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw failure;
+        if (durableSequence < sequence) throw new IOException("FrequencyLog is closed");
+    }
+    
+    private void runFlusher() {
+        while (true) {
+            boolean stop;
+            synchronized (this) {
+                if (!closed && pendingRecords < maxBatchRecords) {
+                    try {
+                        wait(flushIntervalMillis);
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                stop = closed;
+            }
+            
+            try {
+                long sequence;
+                // Take the batch under ioLock so a checkpoint cannot rotate between take and write
+                synchronized (ioLock) {
+                    ByteBuffer batch;
+                    synchronized (this) {
+                        batch = takePending();
+                        sequence = appendedSequence;
+                    }
+                    writeAndForce(batch);
+                }
+                synchronized (this) {
+                    durableSequence = Math.max(durableSequence, sequence);
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            if (stop) return;
+        }
+    }
+    
+    /**
+     * Detach the buffered records (caller holds this)
+     */
+    private ByteBuffer takePending() {
+        ByteBuffer batch = pending;
+        batch.flip();
+        pending = ByteBuffer.allocate(Math.max(1 << 16, batch.capacity()));
+        pendingRecords = 0;
+        return batch;
+    }
+    
+    private void writeAndForce(ByteBuffer batch) throws IOException {
+        if (!batch.hasRemaining()) return;
+        segmentBytes += batch.remaining();
+        while (batch.hasRemaining()) {
+            segment.write(batch);
+        }
+        segment.force(false);
+    }
+    
+    /**
+     * Bytes written to the current segment; used to decide when to checkpoint. Never
+     * waits for a write or fsync in progress.
+     */
+    public long segmentBytes() {
+        return segmentBytes;
+    }
+    
+    /**
+     * First half of a checkpoint: flush everything buffered into the current segment and
+     * start a new one. Returns the new segment's number, which the checkpoint must carry.
+     * The caller must capture the state to checkpoint with no appends in between.
+     */
+    public long rotate() throws IOException {
+        long number;
+        long sequence;
+        synchronized (ioLock) {
+            ByteBuffer batch;
+            synchronized (this) {
+                if (closed) throw new IOException("FrequencyLog is closed");
+                batch = takePending();
+                sequence = appendedSequence;
+            }
+            writeAndForce(batch);
+            segment.close();
+            number = segmentNumber + 1;
+            openSegment(number);
+        }
+        synchronized (this) {
+            durableSequence = Math.max(durableSequence, sequence);
+            notifyAll();
+        }
+        return number;
+    }
+    
+    /**
+     * Second half of a checkpoint: write the captured state as checkpoint number and delete
+     * the segments and checkpoints it replaces. Until it completes, recovery still uses the
+     * previous checkpoint plus every segment after it, so a crash in between is harmless.
+     */
+    public void writeCheckpoint(long number, Collection<WordFrequency> words, int suggestionLimit) throws IOException {
+        // MappedTrie.write moves the file into place only once it is complete
+        MappedTrie.write(new FrozenTrie(words, suggestionLimit), checkpointPath(number));
+        for (long old : listNumbers("checkpoint-", ".trie")) {
+            if (old < number) Files.deleteIfExists(checkpointPath(old));
+        }
+        for (long old : listNumbers("wal-", ".log")) {
+            if (old < number) Files.deleteIfExists(segmentPath(old));
+        }
+    }
+    
+    private void openSegment(long number) throws IOException {
+        segment = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+                                   StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentNumber = number;
+        segmentBytes = segment.size();
+    }
+    
+    private Path segmentPath(long number) {
+        return directory.resolve("wal-" + number + ".log");
+    }
+    
+    private Path checkpointPath(long number) {
+        return directory.resolve("checkpoint-" + number + ".trie");
+    }
+    
+    private List<Long> listNumbers(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+    
+    private static long latest(List<Long> numbers) {
+        return numbers.isEmpty() ? -1 : numbers.get(numbers.size() - 1);
+    }
+    
+    /**
+     * Flush and fsync everything appended so far, then stop the flusher
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            if (segment != null) segment.close();
+        }
+        synchronized (this) {
+            if (failure != null) throw failure;
+        }
+    }
+}
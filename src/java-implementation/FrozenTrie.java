@@ -0,0 +1,279 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * Immutable, read-optimized trie built once from a word list.
+ * 
+ * Nodes are numbered in breadth-first order and stored column-wise in primitive arrays,
+ * so a node costs about 14 bytes and there is no object per node, no map and no word
+ * string. Breadth-first numbering keeps every node's children contiguous and sorted by
+ * label, and the children of node i end where those of node i + 1 begin, so one
+ * firstChild column describes the whole shape. Words are rebuilt from edge labels only
+ * for the results a search returns.
+ * 
+ * A FrozenTrie never changes after construction, which makes it safe to share between
+ * any number of threads without synchronization. insert and updateFrequency throw.
+ */
+public class FrozenTrie implements PrefixIndex {
+    private final int suggestionLimit;
+    // Columns are package-private so MappedTrie can write them out as they are
+    final int nodeCount;
+    private final int wordCount;
+    // Edge label leading into each node (unused for the root, node 0)
+    final char[] labels;
+    // Children of node i are firstChild[i] .. firstChild[i + 1] - 1
+    final int[] firstChild;
+    final int[] frequency;
+    final int[] maxFrequency;
+    final long[] endOfWord;
+    
+    /**
+     * Distinct lower-case words in increasing order, with their frequencies
+     */
+    private static final class SortedWords {
+        final String[] words;
+        final int[] frequencies;
+        
+        SortedWords(String[] words, int[] frequencies) {
+            this.words = words;
+            this.frequencies = frequencies;
+        }
+    }
+    
+    /**
+     * Build a frozen copy of the given words; duplicates keep their highest frequency
+     */
+    public FrozenTrie(Collection<WordFrequency> words, int suggestionLimit) {
+        this(sortUnique(words), suggestionLimit);
+    }
+    
+    /**
+     * Build from words that are already lower-case, distinct and in increasing order, such
+     * as a lexicographic walk of a Trie (Trie.iterator). Skips the hashing and sorting of
+     * the Collection constructor, so the build is linear in the total word length.
+     */
+    static FrozenTrie fromSorted(Iterator<WordFrequency> words, int suggestionLimit) {
+        List<String> sorted = new ArrayList<>();
+        int[] frequencies = new int[16];
+        String previous = null;
+        while (words.hasNext()) {
+            WordFrequency wf = words.next();
+            if (wf.word.isEmpty() || (previous != null && previous.compareTo(wf.word) >= 0)) {
+                throw new IllegalArgumentException("Words are not distinct and sorted at " + wf.word);
+            }
+            if (sorted.size() == frequencies.length) {
+                frequencies = Arrays.copyOf(frequencies, frequencies.length * 2);
+            }
+            frequencies[sorted.size()] = wf.frequency;
+            sorted.add(wf.word);
+            previous = wf.word;
+        }
+        return new FrozenTrie(new SortedWords(sorted.toArray(new String[0]), frequencies), suggestionLimit);
+    }
+    
+    private static SortedWords sortUnique(Collection<WordFrequency> words) {
+        Map<String, Integer> unique = new HashMap<>();
+        for (WordFrequency wf : words) {
+            if (wf.word == null || wf.word.isEmpty()) continue;
+            unique.merge(wf.word.toLowerCase(), wf.frequency, Math::max);
+        }
+        String[] sorted = unique.keySet().toArray(new String[0]);
+        Arrays.sort(sorted);
+        int[] frequencies = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            frequencies[i] = unique.get(sorted[i]);
+        }
+        return new SortedWords(sorted, frequencies);
+    }
+    
+    private FrozenTrie(SortedWords words, int suggestionLimit) {
+        if (suggestionLimit < 1) {
+            throw new IllegalArgumentException("suggestionLimit must be positive: " + suggestionLimit);
+        }
+        this.suggestionLimit = suggestionLimit;
+        String[] sorted = words.words;
+        this.wordCount = sorted.length;
+        
+        // Each node covers the range of sorted words that share its path; count nodes first
+        int count = countNodes(sorted);
+        this.nodeCount = count;
+        this.labels = new char[count];
+        this.firstChild = new int[count + 1];
+        this.frequency = new int[count];
+        this.maxFrequency = new int[count];
+        this.endOfWord = new long[(count + 63) >>> 6];
+        
+        // Breadth-first fill: a queue of (from, to, depth) word ranges, one per node
+        int[] from = new int[count];
+        int[] to = new int[count];
+        int[] depth = new int[count];
+        to[0] = sorted.length;
+        int next = 1;
+        for (int node = 0; node < count; node++) {
+            int lo = from[node];
+            int hi = to[node];
+            int d = depth[node];
+            if (lo < hi && sorted[lo].length() == d) {
+                endOfWord[node >>> 6] |= 1L << node;
+                frequency[node] = words.frequencies[lo];
+                lo++;
+            }
+            firstChild[node] = next;
+            while (lo < hi) {
+                char ch = sorted[lo].charAt(d);
+                int end = lo + 1;
+                while (end < hi && sorted[end].charAt(d) == ch) {
+                    end++;
+                }
+                labels[next] = ch;
+                from[next] = lo;
+                to[next] = end;
+                depth[next] = d + 1;
+                next++;
+                lo = end;
+            }
+        }
+        firstChild[count] = next;
+        
+        // Children always have higher ids than their parent, so one backward pass fills the bounds
+        for (int node = count - 1; node >= 0; node--) {
+            int max = isEndOfWord(node) ? frequency[node] : Integer.MIN_VALUE;
+            for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+                max = Math.max(max, maxFrequency[child]);
+            }
+            maxFrequency[node] = max;
+        }
+    }
+    
+    private static int countNodes(String[] sorted) {
+        // One root plus, for every word, the characters it does not share with its predecessor
+        int count = 1;
+        for (int i = 0; i < sorted.length; i++) {
+            int shared = 0;
+            if (i > 0) {
+                String previous = sorted[i - 1];
+                int max = Math.min(previous.length(), sorted[i].length());
+                while (shared < max && previous.charAt(shared) == sorted[i].charAt(shared)) {
+                    shared++;
+                }
+            }
+            count += sorted[i].length() - shared;
+        }
+        return count;
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+    
+    public int nodeCount() {
+        return nodeCount;
+    }
+    
+    @Override
+    public int wordCount() {
+        return wordCount;
+    }
+    
+    private boolean isEndOfWord(int node) {
+        return (endOfWord[node >>> 6] & (1L << node)) != 0;
+    }
+    
+    private int child(int node, char ch) {
+        int low = firstChild[node];
+        int high = firstChild[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (labels[mid] < ch) {
+                low = mid + 1;
+            } else if (labels[mid] > ch) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public void insert(String word, int frequency) {
+        throw new UnsupportedOperationException("FrozenTrie is read-only");
+    }
+    
+    @Override
+    public void updateFrequency(String word, int increment) {
+        throw new UnsupportedOperationException("FrozenTrie is read-only");
+    }
+    
+    /**
+     * Search for words with given prefix and return the top K by frequency (best-first)
+     */
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        List<WordFrequency> results = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty()) return results;
+        
+        String lowerPrefix = prefix.toLowerCase();
+        int node = 0;
+        for (int i = 0; i < lowerPrefix.length(); i++) {
+            node = child(node, lowerPrefix.charAt(i));
+            if (node < 0) return results; // Prefix not found
+        }
+        
+        PriorityQueue<Candidate<Integer>> queue = new PriorityQueue<>(Candidate.ORDER);
+        queue.add(new Candidate<>(node, lowerPrefix, maxFrequency[node]));
+        
+        while (!queue.isEmpty() && results.size() < suggestionLimit) {
+            Candidate<Integer> candidate = queue.poll();
+            if (candidate.node == null) {
+                results.add(new WordFrequency(candidate.key, candidate.rank));
+                continue;
+            }
+            
+            int current = candidate.node;
+            if (isEndOfWord(current)) {
+                queue.add(new Candidate<>(null, candidate.key, frequency[current]));
+            }
+            for (int child = firstChild[current]; child < firstChild[current + 1]; child++) {
+                queue.add(new Candidate<>(child, candidate.key + labels[child], maxFrequency[child]));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Get all words in the trie (for debugging/statistics)
+     */
+    @Override
+    public List<WordFrequency> getAllWords() {
+        List<WordFrequency> results = new ArrayList<>();
+        StringBuilder path = new StringBuilder();
+        // Explicit stack of (node, depth) so long words cannot overflow the call stack
+        int[] stack = new int[16];
+        int[] depths = new int[16];
+        int size = 0;
+        stack[size] = 0;
+        depths[size++] = 0;
+        while (size > 0) {
+            int node = stack[--size];
+            int d = depths[size];
+            path.setLength(Math.max(0, d - 1));
+            if (d > 0) path.append(labels[node]);
+            if (isEndOfWord(node)) {
+                results.add(new WordFrequency(path.toString(), frequency[node]));
+            }
+            for (int child = firstChild[node + 1] - 1; child >= firstChild[node]; child--) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                    depths = Arrays.copyOf(depths, size * 2);
+                }
+                stack[size] = child;
+                depths[size++] = d + 1;
+            }
+        }
+        results.sort((a, b) -> Integer.compare(b.frequency, a.frequency));
+        return results;
+    }
+}
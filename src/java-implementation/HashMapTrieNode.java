@@ -0,0 +1,129 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * TrieNode that keeps its children in a HashMap keyed by character.
+ * Cheap to build and to grow, but every node pays for a map, its table and an entry per child.
+ */
+public class HashMapTrieNode extends TrieNode {
+    // Boxed labels shared by every node, one page of 256 per high byte, so looking up a
+    // label outside the Character cache (above 127) does not box it afresh
+    private static final Character[][] LABEL_PAGES = new Character[256][];
+    
+    Map<Character, TrieNode> children;
+    // Slots in the map's table (0 until the first child), which HashMap never shrinks
+    private int tableSlots;
+    
+    public HashMapTrieNode() {
+        this(true);
+    }
+    
+    public HashMapTrieNode(boolean keepTopWords) {
+        super(keepTopWords);
+        this.children = new HashMap<>();
+    }
+    
+    @Override
+    TrieNode child(char ch) {
+        return children.get(label(ch));
+    }
+    
+    @Override
+    TrieNode addChild(char ch, TrieNode child) {
+        if (children.put(label(ch), child) == null) {
+            // Mirror HashMap's growth: 16 slots at first, doubling past 3/4 full
+            tableSlots = Math.max(tableSlots, 16);
+            while (children.size() > tableSlots * 3 / 4) {
+                tableSlots <<= 1;
+            }
+        }
+        return child;
+    }
+    
+    @Override
+    TrieNode removeChild(char ch) {
+        return children.remove(label(ch));
+    }
+    
+    /**
+     * Copy the children into a map sized for them once the table has at least twice the
+     * slots they need; an empty map drops its table altogether
+     */
+    @Override
+    boolean compact() {
+        int fitted = 0;
+        if (!children.isEmpty()) {
+            fitted = 2;
+            while (children.size() > fitted * 3 / 4) {
+                fitted <<= 1;
+            }
+        }
+        if (tableSlots < 2 * Math.max(1, fitted)) return false;
+        
+        // One put at a time: putAll would size the table for the map with extra headroom
+        Map<Character, TrieNode> fresh = new HashMap<>(Math.max(1, fitted));
+        for (Map.Entry<Character, TrieNode> entry : children.entrySet()) {
+            fresh.put(entry.getKey(), entry.getValue());
+        }
+        children = fresh;
+        tableSlots = fitted;
+        return true;
+    }
+    
+    @Override
+    int childCount() {
+        return children.size();
+    }
+    
+    @Override
+    Iterable<TrieNode> children() {
+        return children.values();
+    }
+    
+    @Override
+    void forEachChild(ChildVisitor visitor) {
+        children.forEach(visitor);
+    }
+    
+    @Override
+    void forEachChildDescending(ChildVisitor visitor) {
+        // The map has no order, so sort its labels first
+        char[] sorted = new char[children.size()];
+        int count = 0;
+        for (Character label : children.keySet()) {
+            sorted[count++] = label;
+        }
+        Arrays.sort(sorted);
+        for (int i = count - 1; i >= 0; i--) {
+            visitor.visit(sorted[i], children.get(label(sorted[i])));
+        }
+    }
+    
+    @Override
+    long shallowBytes() {
+        // Boxed labels are shared (see label) and cost nothing per node
+        long table = tableSlots == 0 ? 0 : HeapEstimate.array(HeapEstimate.REFERENCE, tableSlots);
+        return HeapEstimate.align(HeapEstimate.HEADER + 25) + HeapEstimate.HASH_MAP
+                + table + (long) children.size() * HeapEstimate.MAP_ENTRY;
+    }
+    
+    /**
+     * The shared boxed form of ch. Pages are filled without locking and another thread
+     * may see a page before its entries, so a missing entry falls back to boxing.
+     */
+    private static Character label(char ch) {
+        if (ch < 128) return ch;
+        
+        Character[] page = LABEL_PAGES[ch >>> 8];
+        if (page == null) {
+            page = new Character[256];
+            for (int low = 0; low < 256; low++) {
+                page[low] = (char) ((ch & 0xFF00) | low);
+            }
+            LABEL_PAGES[ch >>> 8] = page;
+        }
+        Character boxed = page[ch & 0xFF];
+        return boxed != null ? boxed : Character.valueOf(ch);
+    }
+}
\ No newline at end of file
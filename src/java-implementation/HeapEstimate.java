@@ -0,0 +1,53 @@
+package autocomplete;
+
+/**
+ * Object size arithmetic for a 64-bit JVM with compressed oops and class pointers
+ * (the default below 32 GB of heap): 12-byte headers, 4-byte references, 8-byte alignment.
+ */
+final class HeapEstimate {
+    static final int HEADER = 12;
+    static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+    // HashMap/ConcurrentHashMap object and one entry node (hash, key, value, next)
+    static final int HASH_MAP = 48;
+    static final int CONCURRENT_HASH_MAP = 64;
+    static final int MAP_ENTRY = 32;
+    // ArrayList object and one WordFrequency
+    static final int ARRAY_LIST = 24;
+    static final int WORD_FREQUENCY = 24;
+    
+    private HeapEstimate() {
+    }
+    
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+    
+    static long array(int elementBytes, int length) {
+        return align(ARRAY_HEADER + (long) elementBytes * length);
+    }
+    
+    /**
+     * A String with Latin-1 compact storage (UTF-16 if it has other characters)
+     */
+    static long string(String value) {
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) < 256;
+        }
+        return align(HEADER + 12) + array(latin1 ? 1 : 2, value.length());
+    }
+    
+    /**
+     * A hash map's entries plus its table, which is allocated with initialSlots slots on
+     * the first put (16 for a default HashMap) and doubles whenever it is more than 3/4 full
+     */
+    static long hashEntries(int size, int initialSlots) {
+        if (size == 0) return 0;
+        int capacity = initialSlots;
+        while (size > capacity * 3 / 4) {
+            capacity <<= 1;
+        }
+        return array(REFERENCE, capacity) + (long) size * MAP_ENTRY;
+    }
+}
@@ -0,0 +1,22 @@
+package autocomplete;
+
+/**
+ * A PrefixIndex that can report its own size and search work to EngineMetrics
+ */
+interface InstrumentedIndex {
+    /**
+     * Search counters, or null when instrumentation is off
+     */
+    SearchStatistics searchStatistics();
+    
+    /**
+     * Number of nodes, including the root
+     */
+    int nodeCount();
+    
+    /**
+     * Rough retained heap in bytes (64-bit JVM with compressed oops), word strings included.
+     * Walks the whole index, so it is meant for statistics, not for hot paths.
+     */
+    long estimatedHeapBytes();
+}
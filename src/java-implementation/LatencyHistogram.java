@@ -0,0 +1,86 @@
+package autocomplete;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ * 
+ * Values below 128 ns get a bucket each; above that every power of two is split into 64
+ * equal sub-buckets, so any recorded value is reported within 1/64 (~1.6%) of its true
+ * size while the whole long range fits in under 4k counters. Recording is one atomic
+ * increment, so request threads can share a histogram without contention on a lock.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS + 1;
+    
+    private final AtomicLongArray counts = new AtomicLongArray((BUCKET_COUNT + 1) * SUB_BUCKET_HALF);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    /**
+     * Record one latency; negative values count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(value);
+        maxNanos.accumulateAndGet(value, Math::max);
+    }
+    
+    public long getCount() {
+        return totalCount.get();
+    }
+    
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+    
+    public double getMeanNanos() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalNanos.get() / count;
+    }
+    
+    /**
+     * The smallest bucket bound that at least percentile % of recorded values fall under,
+     * or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+    
+    private static int indexOf(long value) {
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        int subBucket = (int) (value >>> bucket);
+        return bucket * SUB_BUCKET_HALF + subBucket;
+    }
+    
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int bucket = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - (long) bucket * SUB_BUCKET_HALF;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%.1fus p99=%.1fus max=%.1fus", getCount(),
+                getValueAtPercentile(50) / 1000.0, getValueAtPercentile(99) / 1000.0,
+                getMaxNanos() / 1000.0);
+    }
+}
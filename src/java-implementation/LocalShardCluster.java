@@ -0,0 +1,100 @@
+package autocomplete;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Several ShardServer processes on localhost, for testing a sharded system end to end
+ * without deploying anything:
+ * 
+ *   try (LocalShardCluster cluster = LocalShardCluster.start(4, 5)) {
+ *       AutocompleteSystem system = AutocompleteSystem.connectShards(cluster.addresses());
+ *       ...
+ *   }
+ * 
+ * Each shard is a child JVM running ShardServer on a free port, with this JVM's java
+ * binary and class path. start() returns once every shard is listening; close() stops
+ * them all. Shard errors go to this process's stderr.
+ */
+public class LocalShardCluster implements Closeable {
+    private final List<Process> processes;
+    private final List<InetSocketAddress> addresses;
+    
+    private LocalShardCluster(List<Process> processes, List<InetSocketAddress> addresses) {
+        this.processes = processes;
+        this.addresses = addresses;
+    }
+    
+    /**
+     * Start count shard processes with the given suggestion limit
+     */
+    public static LocalShardCluster start(int count, int suggestionLimit) throws IOException {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive: " + count);
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        LocalShardCluster cluster = new LocalShardCluster(processes, addresses);
+        try {
+            for (int i = 0; i < count; i++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                                 ShardServer.class.getName(), "0", Integer.toString(suggestionLimit))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+            for (Process process : processes) {
+                addresses.add(new InetSocketAddress("localhost", awaitPort(process)));
+            }
+        } catch (IOException | RuntimeException e) {
+            cluster.close();
+            throw e;
+        }
+        return cluster;
+    }
+    
+    /**
+     * Read the shard's "Shard listening on port N" line
+     */
+    private static int awaitPort(Process process) throws IOException {
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = out.readLine();
+        String marker = "port ";
+        if (line == null || !line.contains(marker)) {
+            throw new IOException("Shard process did not start: " + (line == null ? "exited" : line));
+        }
+        return Integer.parseInt(line.substring(line.lastIndexOf(marker) + marker.length()).trim());
+    }
+    
+    /**
+     * Shard addresses in start order, for AutocompleteSystem.connectShards
+     */
+    public List<InetSocketAddress> addresses() {
+        return Collections.unmodifiableList(addresses);
+    }
+    
+    /**
+     * Stop every shard process and wait for it to exit
+     */
+    @Override
+    public void close() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        boolean interrupted = false;
+        for (Process process : processes) {
+            while (true) {
+                try {
+                    process.waitFor();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -4,6 +4,7 @@ import java.util.*;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 
 /**
  * Main CLI interface for the Autocomplete System
@@ -55,6 +56,13 @@ public class Main {
     private void handleSearch(String prefix) {
         List<WordFrequency> suggestions = autocomplete.getSuggestions(prefix);
         
+        // Fall back to typo-tolerant matching before offering to add the word
+        boolean corrected = false;
+        if (suggestions.isEmpty()) {
+            suggestions = autocomplete.getFuzzySuggestions(prefix, prefix.length() <= 4 ? 1 : 2);
+            corrected = !suggestions.isEmpty();
+        }
+        
         if (suggestions.isEmpty()) {
             System.out.println(ANSI_YELLOW + "\n⚠ No suggestions found for '" + prefix + "'" + ANSI_RESET);
             System.out.println("\nOptions:");
@@ -92,8 +100,10 @@ public class Main {
                     displaySuggestions(newSuggestions, prefix);
                 }
             }
-        }
         } else {
+            if (corrected) {
+                System.out.println(ANSI_YELLOW + "\n⚠ No exact matches for '" + prefix + "'. Did you mean:" + ANSI_RESET);
+            }
             displaySuggestions(suggestions, prefix);
             
             System.out.println("\nActions:");
@@ -146,6 +156,12 @@ public class Main {
             return ANSI_BOLD + ANSI_GREEN + word.substring(0, prefix.length()) + 
                    ANSI_RESET + word.substring(prefix.length());
         }
+        return word;
+    }
+    
+    private void printMetrics() {
+        System.out.println(ANSI_BOLD + "\n=== Engine Metrics ===" + ANSI_RESET);
+        System.out.print(autocomplete.getMetrics());
     }
     
     private void handleCommand(String command) {
@@ -155,6 +171,7 @@ public class Main {
                 break;
             case "/stats":
                 autocomplete.printStatistics();
+                printMetrics();
                 break;
             case "/history":
                 printHistory();
@@ -187,21 +204,21 @@ public class Main {
     }
     
     private void printAllWords() {
-        List<WordFrequency> allWords = autocomplete.getAllWords();
+        int total = autocomplete.getWordCount();
+        WordPage page = autocomplete.getWordPage("", WordPage.Order.FREQUENCY, null, 30);
         System.out.println("\n=== All Words in System ===");
-        System.out.println("Total: " + allWords.size() + " words\n");
+        System.out.println("Total: " + total + " words\n");
         
         int count = 0;
-        for (WordFrequency wf : allWords) {
+        for (WordFrequency wf : page.getWords()) {
             System.out.printf("%-20s (freq: %d)    ", wf.word, wf.frequency);
             count++;
             if (count % 3 == 0) System.out.println();
-            if (count >= 30) {
-                System.out.println("\n... and " + (allWords.size() - 30) + " more");
-                break;
-            }
         }
         if (count % 3 != 0) System.out.println();
+        if (page.hasMore()) {
+            System.out.println("... and " + (total - count) + " more");
+        }
     }
     
     private void addNewWord() {
@@ -331,7 +348,27 @@ public class Main {
         System.out.println("Goodbye!" + ANSI_RESET);
     }
     
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            return;
+        }
         new Main().run();
     }
+    
+    /**
+     * Server mode: serve suggestions over HTTP instead of the interactive prompt
+     */
+    private static void serve(int port) throws IOException {
+        // Read once when the JDK server starts; see SuggestionServer
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        AutocompleteSystem system = AutocompleteSystem.concurrent(Trie.DEFAULT_SUGGESTION_LIMIT);
+        SuggestionServer server = new SuggestionServer(system, new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println(ANSI_GREEN + "Serving suggestions on http://localhost:" + server.getPort() +
+                           " (/suggest, /select, /add, /stats)" + ANSI_RESET);
+    }
 }
\ No newline at end of file
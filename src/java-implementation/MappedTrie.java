@@ -0,0 +1,345 @@
+package autocomplete;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only trie served straight from a memory-mapped snapshot file.
+ * 
+ * The file holds a FrozenTrie's columns behind a versioned header, so opening it maps
+ * the file and validates the header without reading or allocating per node. Startup
+ * cost does not depend on dictionary size, only the pages a search touches are ever
+ * read, and every process mapping the same file shares one copy in the page cache.
+ * 
+ * File layout (little-endian):
+ * <pre>
+ *   header (32 bytes): magic "TRIE", version, header size, suggestion limit,
+ *                      node count, word count, reserved (8 bytes)
+ *   char[nodeCount]     labels, padded to a multiple of 4 bytes
+ *   int[nodeCount + 1]  firstChild
+ *   int[nodeCount]      frequency
+ *   int[nodeCount]      maxFrequency
+ *   long[(nodeCount + 63) / 64] end-of-word bits
+ * </pre>
+ * A single mapping is limited to 2 GB, about 150 million nodes.
+ */
+public class MappedTrie implements PrefixIndex {
+    static final int MAGIC = 0x54524945; // "TRIE"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    
+    private final MappedByteBuffer buffer;
+    private final int suggestionLimit;
+    private final int nodeCount;
+    private final int wordCount;
+    private final int labelsOffset;
+    private final int firstChildOffset;
+    private final int frequencyOffset;
+    private final int maxFrequencyOffset;
+    private final int endOfWordOffset;
+    
+    private MappedTrie(MappedByteBuffer buffer, int suggestionLimit) throws IOException {
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a trie snapshot file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported trie snapshot version " + version + " (expected " + VERSION + ")");
+        }
+        
+        int storedLimit = buffer.getInt(12);
+        int nodes = buffer.getInt(16);
+        int words = buffer.getInt(20);
+        int labels = buffer.getInt(8);
+        // Header values come from the file: range-check them and do the offset arithmetic
+        // in long, so a corrupt header fails here and not with an overflowed offset later
+        if (labels < HEADER_SIZE || labels > buffer.capacity()) {
+            throw new IOException("Corrupt trie snapshot: header size " + labels);
+        }
+        if (nodes < 1 || words < 0 || words > nodes) {
+            throw new IOException("Corrupt trie snapshot: " + nodes + " nodes, " + words + " words");
+        }
+        if (suggestionLimit <= 0 && storedLimit < 1) {
+            throw new IOException("Corrupt trie snapshot: suggestion limit " + storedLimit);
+        }
+        long firstChild = labels + align4(nodes * 2L);
+        long frequency = firstChild + (nodes + 1L) * 4;
+        long maxFrequency = frequency + nodes * 4L;
+        long endOfWord = maxFrequency + nodes * 4L;
+        long expectedSize = endOfWord + ((nodes + 63L) >>> 6) * 8;
+        if (buffer.capacity() < expectedSize) {
+            throw new IOException("Truncated trie snapshot: " + buffer.capacity() + " of " + expectedSize + " bytes");
+        }
+        
+        // Every offset is below the capacity, an int, from here on
+        this.suggestionLimit = suggestionLimit > 0 ? suggestionLimit : storedLimit;
+        this.nodeCount = nodes;
+        this.wordCount = words;
+        this.labelsOffset = labels;
+        this.firstChildOffset = (int) firstChild;
+        this.frequencyOffset = (int) frequency;
+        this.maxFrequencyOffset = (int) maxFrequency;
+        this.endOfWordOffset = (int) endOfWord;
+    }
+    
+    /**
+     * Map a snapshot file, using the suggestion limit it was written with
+     */
+    public static MappedTrie open(Path file) throws IOException {
+        return open(file, 0);
+    }
+    
+    /**
+     * Map a snapshot file; suggestionLimit &lt;= 0 keeps the limit stored in the file
+     */
+    public static MappedTrie open(Path file, int suggestionLimit) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MappedTrie(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), suggestionLimit);
+        }
+    }
+    
+    /**
+     * Write any index as a snapshot file. The file is written next to the target and
+     * moved into place, so readers never map a half-written snapshot.
+     */
+    public static void write(PrefixIndex index, Path file) throws IOException {
+        FrozenTrie frozen = index instanceof FrozenTrie
+                ? (FrozenTrie) index
+                : new FrozenTrie(index.getAllWords(), index.getSuggestionLimit());
+        write(frozen, file);
+    }
+    
+    public static void write(FrozenTrie trie, Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                int n = trie.nodeCount;
+                int words = 0;
+                for (long bits : trie.endOfWord) {
+                    words += Long.bitCount(bits);
+                }
+                
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(HEADER_SIZE).putInt(trie.getSuggestionLimit())
+                      .putInt(n).putInt(words).putLong(0);
+                header.flip();
+                writeFully(channel, header);
+                
+                ColumnWriter out = new ColumnWriter(channel);
+                for (int i = 0; i < n; i++) out.putChar(trie.labels[i]);
+                out.pad4();
+                for (int value : trie.firstChild) out.putInt(value);
+                for (int value : trie.frequency) out.putInt(value);
+                for (int value : trie.maxFrequency) out.putInt(value);
+                for (long value : trie.endOfWord) out.putLong(value);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private static long align4(long bytes) {
+        return (bytes + 3) & ~3L;
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    /**
+     * Buffered little-endian writer for the column section
+     */
+    private static final class ColumnWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+        
+        ColumnWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+        
+        void putChar(char value) throws IOException {
+            ensure(2);
+            buffer.putChar(value);
+        }
+        
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+        
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+        
+        void pad4() throws IOException {
+            while ((written + buffer.position()) % 4 != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+        }
+        
+        void flush() throws IOException {
+            buffer.flip();
+            written += buffer.remaining();
+            writeFully(channel, buffer);
+            buffer.clear();
+        }
+        
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+    
+    public int nodeCount() {
+        return nodeCount;
+    }
+    
+    @Override
+    public int wordCount() {
+        return wordCount;
+    }
+    
+    private char label(int node) {
+        return buffer.getChar(labelsOffset + node * 2);
+    }
+    
+    private int firstChild(int node) {
+        return buffer.getInt(firstChildOffset + node * 4);
+    }
+    
+    private int frequency(int node) {
+        return buffer.getInt(frequencyOffset + node * 4);
+    }
+    
+    private int maxFrequency(int node) {
+        return buffer.getInt(maxFrequencyOffset + node * 4);
+    }
+    
+    private boolean isEndOfWord(int node) {
+        return (buffer.getLong(endOfWordOffset + (node >>> 6) * 8) & (1L << node)) != 0;
+    }
+    
+    private int child(int node, char ch) {
+        int low = firstChild(node);
+        int high = firstChild(node + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midLabel = label(mid);
+            if (midLabel < ch) {
+                low = mid + 1;
+            } else if (midLabel > ch) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public void insert(String word, int frequency) {
+        throw new UnsupportedOperationException("MappedTrie is read-only");
+    }
+    
+    @Override
+    public void updateFrequency(String word, int increment) {
+        throw new UnsupportedOperationException("MappedTrie is read-only");
+    }
+    
+    /**
+     * Search for words with given prefix and return the top K by frequency (best-first),
+     * reading only the mapped pages the search touches
+     */
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        List<WordFrequency> results = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty() || nodeCount == 0) return results;
+        
+        String lowerPrefix = prefix.toLowerCase();
+        int node = 0;
+        for (int i = 0; i < lowerPrefix.length(); i++) {
+            node = child(node, lowerPrefix.charAt(i));
+            if (node < 0) return results; // Prefix not found
+        }
+        
+        PriorityQueue<Candidate<Integer>> queue = new PriorityQueue<>(Candidate.ORDER);
+        queue.add(new Candidate<>(node, lowerPrefix, maxFrequency(node)));
+        
+        while (!queue.isEmpty() && results.size() < suggestionLimit) {
+            Candidate<Integer> candidate = queue.poll();
+            if (candidate.node == null) {
+                results.add(new WordFrequency(candidate.key, candidate.rank));
+                continue;
+            }
+            
+            int current = candidate.node;
+            if (isEndOfWord(current)) {
+                queue.add(new Candidate<>(null, candidate.key, frequency(current)));
+            }
+            int end = firstChild(current + 1);
+            for (int child = firstChild(current); child < end; child++) {
+                queue.add(new Candidate<>(child, candidate.key + label(child), maxFrequency(child)));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Get all words in the snapshot (for debugging/statistics)
+     */
+    @Override
+    public List<WordFrequency> getAllWords() {
+        List<WordFrequency> results = new ArrayList<>(wordCount);
+        if (nodeCount == 0) return results;
+        
+        StringBuilder path = new StringBuilder();
+        int[] stack = new int[16];
+        int[] depths = new int[16];
+        int size = 0;
+        stack[size] = 0;
+        depths[size++] = 0;
+        while (size > 0) {
+            int node = stack[--size];
+            int d = depths[size];
+            path.setLength(Math.max(0, d - 1));
+            if (d > 0) path.append(label(node));
+            if (isEndOfWord(node)) {
+                results.add(new WordFrequency(path.toString(), frequency(node)));
+            }
+            for (int child = firstChild(node + 1) - 1; child >= firstChild(node); child--) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                    depths = Arrays.copyOf(depths, size * 2);
+                }
+                stack[size] = child;
+                depths[size++] = d + 1;
+            }
+        }
+        results.sort((a, b) -> Integer.compare(b.frequency, a.frequency));
+        return results;
+    }
+}
@@ -0,0 +1,167 @@
+package autocomplete;
+
+import java.util.Locale;
+
+/**
+ * Point-in-time copy of an AutocompleteSystem's instrumentation (see EngineMetrics).
+ * Latencies are in nanoseconds. Values the index cannot report (an index that is not
+ * instrumented, or instrumentation switched off) are 0 for counters and -1 for sizes.
+ */
+public final class MetricsSnapshot {
+    /**
+     * Count, mean and percentiles of one operation's latency
+     */
+    public static final class LatencySummary {
+        private final long count;
+        private final double meanNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+        
+        LatencySummary(LatencyHistogram histogram) {
+            this.count = histogram == null ? 0 : histogram.getCount();
+            this.meanNanos = histogram == null ? 0 : histogram.getMeanNanos();
+            this.p50Nanos = histogram == null ? 0 : histogram.getValueAtPercentile(50);
+            this.p90Nanos = histogram == null ? 0 : histogram.getValueAtPercentile(90);
+            this.p99Nanos = histogram == null ? 0 : histogram.getValueAtPercentile(99);
+            this.maxNanos = histogram == null ? 0 : histogram.getMaxNanos();
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public double getMeanNanos() {
+            return meanNanos;
+        }
+        
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+        
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+        
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+        
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d calls, mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us",
+                    count, meanNanos / 1000, p50Nanos / 1000.0, p90Nanos / 1000.0, p99Nanos / 1000.0,
+                    maxNanos / 1000.0);
+        }
+    }
+    
+    private final boolean enabled;
+    private final LatencySummary suggestions;
+    private final LatencySummary selections;
+    private final LatencySummary additions;
+    private final long searches;
+    private final double meanNodesVisited;
+    private final long maxNodesVisited;
+    private final double meanCandidates;
+    private final long maxCandidates;
+    private final long nodeCount;
+    private final long estimatedHeapBytes;
+    
+    MetricsSnapshot(boolean enabled, LatencyHistogram suggestions, LatencyHistogram selections,
+                    LatencyHistogram additions, SearchStatistics search, long nodeCount, long estimatedHeapBytes) {
+        this.enabled = enabled;
+        this.suggestions = new LatencySummary(suggestions);
+        this.selections = new LatencySummary(selections);
+        this.additions = new LatencySummary(additions);
+        this.searches = search == null ? 0 : search.searches();
+        this.meanNodesVisited = searches == 0 ? 0 : (double) search.nodesVisited() / searches;
+        this.maxNodesVisited = search == null ? 0 : search.maxNodesVisited();
+        this.meanCandidates = searches == 0 ? 0 : (double) search.candidates() / searches;
+        this.maxCandidates = search == null ? 0 : search.maxCandidates();
+        this.nodeCount = nodeCount;
+        this.estimatedHeapBytes = estimatedHeapBytes;
+    }
+    
+    /**
+     * False when the JVM runs with -Dautocomplete.metrics=false; only sizes are reported then
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public LatencySummary getSuggestionLatency() {
+        return suggestions;
+    }
+    
+    public LatencySummary getSelectionLatency() {
+        return selections;
+    }
+    
+    public LatencySummary getAddWordLatency() {
+        return additions;
+    }
+    
+    /**
+     * Searches that reached the index (suggestion cache hits never do)
+     */
+    public long getSearches() {
+        return searches;
+    }
+    
+    /**
+     * Trie nodes touched per search: the prefix walk plus every node expanded
+     */
+    public double getMeanNodesVisited() {
+        return meanNodesVisited;
+    }
+    
+    public long getMaxNodesVisited() {
+        return maxNodesVisited;
+    }
+    
+    /**
+     * Candidates a search had produced when it stopped at the suggestion limit: the
+     * prefix node's top K list, or every word and subtree still queued in a best-first
+     * search
+     */
+    public double getMeanCandidates() {
+        return meanCandidates;
+    }
+    
+    public long getMaxCandidates() {
+        return maxCandidates;
+    }
+    
+    public long getNodeCount() {
+        return nodeCount;
+    }
+    
+    public long getEstimatedHeapBytes() {
+        return estimatedHeapBytes;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (enabled) {
+            text.append("getSuggestions:   ").append(suggestions).append('\n');
+            text.append("selectSuggestion: ").append(selections).append('\n');
+            text.append("addWord:          ").append(additions).append('\n');
+            text.append(String.format(Locale.ROOT,
+                    "Index searches:   %d, nodes visited mean %.1f / max %d, candidates mean %.1f / max %d%n",
+                    searches, meanNodesVisited, maxNodesVisited, meanCandidates, maxCandidates));
+        } else {
+            text.append("Instrumentation:  off (-Dautocomplete.metrics=false)\n");
+        }
+        if (nodeCount >= 0) {
+            text.append(String.format(Locale.ROOT, "Index size:       %d nodes, ~%.1f MB heap%n",
+                    nodeCount, estimatedHeapBytes / (1024.0 * 1024.0)));
+        }
+        return text.toString();
+    }
+}
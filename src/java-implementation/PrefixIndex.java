@@ -0,0 +1,55 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * Contract shared by every word index the AutocompleteSystem can serve from.
+ * Words are matched case-insensitively and ranked by frequency (descending),
+ * then lexicographically.
+ */
+public interface PrefixIndex {
+    /**
+     * Insert a word, keeping the higher of its current and the given frequency
+     */
+    void insert(String word, int frequency);
+    
+    /**
+     * Add increment to a word's frequency, inserting the word if it is missing
+     */
+    void updateFrequency(String word, int increment);
+    
+    /**
+     * Top ranked words starting with prefix, at most the index's suggestion limit
+     */
+    List<WordFrequency> search(String prefix);
+    
+    /**
+     * search(prefix) written into a reusable sink, replacing its contents, at most its
+     * capacity. This default still allocates; Trie overrides it to allocate nothing.
+     */
+    default void search(CharSequence prefix, ResultSink sink) {
+        sink.clear();
+        if (prefix == null) return;
+        for (WordFrequency entry : search(prefix.toString())) {
+            if (!sink.add(entry.word, entry.frequency)) return;
+        }
+    }
+    
+    /**
+     * Every word in the index, highest frequency first
+     */
+    List<WordFrequency> getAllWords();
+    
+    /**
+     * Number of distinct words. This default lists every word; indexes that keep a count
+     * override it.
+     */
+    default int wordCount() {
+        return getAllWords().size();
+    }
+    
+    /**
+     * Maximum number of words a search returns
+     */
+    int getSuggestionLimit();
+}
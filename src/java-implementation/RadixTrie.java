@@ -0,0 +1,329 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * Path-compressed (radix / Patricia) trie. A chain of single-child nodes collapses into
+ * one node whose edge carries the whole label, so "engineering" and "environment" share
+ * one "en" node and hang off it as two leaves instead of 16 single-character nodes.
+ * Nodes keep no copy of the word; it is rebuilt from the edge labels only for the words
+ * a search returns. Search is best-first over each node's subtree max frequency, with the
+ * same ranking as Trie.
+ */
+public class RadixTrie implements PrefixIndex, InstrumentedIndex {
+    private final RadixNode root;
+    private final int suggestionLimit;
+    private int nodeCount;
+    private final SearchStatistics searchStatistics = EngineMetrics.ENABLED ? new SearchStatistics() : null;
+    
+    public RadixTrie() {
+        this(Trie.DEFAULT_SUGGESTION_LIMIT);
+    }
+    
+    public RadixTrie(int suggestionLimit) {
+        if (suggestionLimit < 1) {
+            throw new IllegalArgumentException("suggestionLimit must be positive: " + suggestionLimit);
+        }
+        this.suggestionLimit = suggestionLimit;
+        this.root = new RadixNode("");
+        this.nodeCount = 1;
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+    
+    /**
+     * Number of nodes in the trie, including the root
+     */
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+    
+    @Override
+    public SearchStatistics searchStatistics() {
+        return searchStatistics;
+    }
+    
+    /**
+     * Nodes, child arrays and edge labels; there are no word strings to count
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        long bytes = 0;
+        Deque<RadixNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            RadixNode node = stack.pop();
+            bytes += HeapEstimate.align(HeapEstimate.HEADER + 17) + HeapEstimate.string(node.label);
+            if (node.children.length > 0) {
+                bytes += HeapEstimate.array(HeapEstimate.REFERENCE, node.children.length);
+            }
+            for (RadixNode child : node.children) {
+                stack.push(child);
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * Insert a word with its frequency
+     * Time Complexity: O(m) where m is the length of the word
+     */
+    @Override
+    public void insert(String word, int frequency) {
+        if (word == null || word.isEmpty()) return;
+        
+        List<RadixNode> path = new ArrayList<>();
+        RadixNode node = locate(word.toLowerCase(), path, true);
+        int oldFrequency = node.isEndOfWord ? node.frequency : Integer.MIN_VALUE;
+        node.isEndOfWord = true;
+        node.frequency = Math.max(node.frequency, frequency);
+        refreshMaxFrequency(path, oldFrequency, node.frequency);
+    }
+    
+    /**
+     * Update frequency of an existing word or insert if not exists
+     */
+    @Override
+    public void updateFrequency(String word, int increment) {
+        if (word == null || word.isEmpty()) return;
+        
+        List<RadixNode> path = new ArrayList<>();
+        RadixNode node = locate(word.toLowerCase(), path, false);
+        if (node == null) {
+            // Word doesn't exist, insert it
+            insert(word, increment);
+            return;
+        }
+        
+        int oldFrequency;
+        if (node.isEndOfWord) {
+            oldFrequency = node.frequency;
+            node.frequency += increment;
+        } else {
+            oldFrequency = Integer.MIN_VALUE;
+            node.isEndOfWord = true;
+            node.frequency = increment;
+        }
+        refreshMaxFrequency(path, oldFrequency, node.frequency);
+    }
+    
+    /**
+     * Walk to the node that ends exactly at word, splitting an edge if word ends inside it.
+     * Missing branches are created when create is true; otherwise a word that leaves the
+     * existing paths returns null (a word ending inside an edge still counts as present,
+     * like a word that ends on an inner node of a plain Trie).
+     */
+    private RadixNode locate(String word, List<RadixNode> path, boolean create) {
+        RadixNode node = root;
+        path.add(node);
+        int position = 0;
+        
+        while (position < word.length()) {
+            RadixNode child = node.child(word.charAt(position));
+            if (child == null) {
+                if (!create) return null;
+                RadixNode leaf = new RadixNode(word.substring(position));
+                nodeCount++;
+                node.addChild(leaf);
+                path.add(leaf);
+                return leaf;
+            }
+            
+            int common = commonPrefixLength(child.label, word, position);
+            if (common < child.label.length()) {
+                if (!create && position + common < word.length()) return null;
+                child = split(node, child, common);
+            }
+            node = child;
+            path.add(node);
+            position += common;
+        }
+        return node;
+    }
+    
+    /**
+     * Cut child's edge after length characters, putting a new inner node in between
+     */
+    private RadixNode split(RadixNode parent, RadixNode child, int length) {
+        RadixNode middle = new RadixNode(child.label.substring(0, length));
+        nodeCount++;
+        parent.replaceChild(middle);
+        child.label = child.label.substring(length);
+        middle.addChild(child);
+        middle.maxFrequency = child.maxFrequency;
+        return middle;
+    }
+    
+    private static int commonPrefixLength(String label, String word, int offset) {
+        int max = Math.min(label.length(), word.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == word.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * Keep each path node's subtree max frequency exact (see Trie.refreshMaxFrequency)
+     */
+    private void refreshMaxFrequency(List<RadixNode> path, int oldFrequency, int newFrequency) {
+        if (newFrequency >= oldFrequency) {
+            for (RadixNode node : path) {
+                node.maxFrequency = Math.max(node.maxFrequency, newFrequency);
+            }
+            return;
+        }
+        
+        for (int i = path.size() - 1; i >= 0; i--) {
+            RadixNode node = path.get(i);
+            int max = node.isEndOfWord ? node.frequency : Integer.MIN_VALUE;
+            for (RadixNode child : node.children) {
+                max = Math.max(max, child.maxFrequency);
+            }
+            if (max == node.maxFrequency) break;
+            node.maxFrequency = max;
+        }
+    }
+    
+    /**
+     * Search for words with given prefix and return the top K by frequency
+     * Time Complexity: O(k + K * b log(K * b)) where k = prefix length, b = branching factor
+     */
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        List<WordFrequency> results = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty()) return results;
+        
+        String lowerPrefix = prefix.toLowerCase();
+        RadixNode node = root;
+        int position = 0;
+        
+        // Navigate to the first node whose path covers the whole prefix
+        int walked = 0;
+        while (position < lowerPrefix.length()) {
+            node = node.child(lowerPrefix.charAt(position));
+            walked++;
+            if (node == null) {
+                if (EngineMetrics.ENABLED) searchStatistics.record(walked, 0);
+                return results; // Prefix not found
+            }
+            
+            int common = commonPrefixLength(node.label, lowerPrefix, position);
+            if (common < node.label.length() && position + common < lowerPrefix.length()) {
+                if (EngineMetrics.ENABLED) searchStatistics.record(walked, 0);
+                return results; // Prefix leaves the edge
+            }
+            position += node.label.length();
+        }
+        
+        // The prefix may end inside the last edge; the key carries the rest of that label
+        String key = lowerPrefix + node.label.substring(node.label.length() - (position - lowerPrefix.length()));
+        
+        PriorityQueue<Candidate<RadixNode>> queue = new PriorityQueue<>(Candidate.ORDER);
+        queue.add(new Candidate<>(node, key, node.maxFrequency));
+        int expanded = 0;
+        
+        while (!queue.isEmpty() && results.size() < suggestionLimit) {
+            Candidate<RadixNode> candidate = queue.poll();
+            if (candidate.node == null) {
+                results.add(new WordFrequency(candidate.key, candidate.rank));
+                continue;
+            }
+            
+            expanded++;
+            RadixNode current = candidate.node;
+            if (current.isEndOfWord) {
+                queue.add(new Candidate<>(null, candidate.key, current.frequency));
+            }
+            for (RadixNode child : current.children) {
+                if (child.maxFrequency == Integer.MIN_VALUE) continue; // no words below
+                queue.add(new Candidate<>(child, candidate.key + child.label, child.maxFrequency));
+            }
+        }
+        if (EngineMetrics.ENABLED) {
+            searchStatistics.record(walked + expanded - 1, results.size() + queue.size());
+        }
+        return results;
+    }
+    
+    /**
+     * Get all words in the trie (for debugging/statistics)
+     */
+    @Override
+    public List<WordFrequency> getAllWords() {
+        List<WordFrequency> results = new ArrayList<>();
+        collectWords(root, new StringBuilder(), results);
+        results.sort((a, b) -> Integer.compare(b.frequency, a.frequency));
+        return results;
+    }
+    
+    private void collectWords(RadixNode node, StringBuilder path, List<WordFrequency> results) {
+        int length = path.length();
+        path.append(node.label);
+        if (node.isEndOfWord) {
+            results.add(new WordFrequency(path.toString(), node.frequency));
+        }
+        for (RadixNode child : node.children) {
+            collectWords(child, path, results);
+        }
+        path.setLength(length);
+    }
+    
+    /**
+     * Radix node: the label of the edge leading into it plus children sorted by first character
+     */
+    static class RadixNode {
+        private static final RadixNode[] NO_CHILDREN = new RadixNode[0];
+        
+        String label;
+        RadixNode[] children;
+        boolean isEndOfWord;
+        int frequency;
+        int maxFrequency;
+        
+        RadixNode(String label) {
+            this.label = label;
+            this.children = NO_CHILDREN;
+            this.maxFrequency = Integer.MIN_VALUE;
+        }
+        
+        RadixNode child(char first) {
+            int index = indexOf(first);
+            return index >= 0 ? children[index] : null;
+        }
+        
+        void addChild(RadixNode child) {
+            int position = -indexOf(child.label.charAt(0)) - 1;
+            RadixNode[] newChildren = new RadixNode[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, position);
+            newChildren[position] = child;
+            System.arraycopy(children, position, newChildren, position + 1, children.length - position);
+            children = newChildren;
+        }
+        
+        void replaceChild(RadixNode child) {
+            children[indexOf(child.label.charAt(0))] = child;
+        }
+        
+        private int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midFirst = children[mid].label.charAt(0);
+                if (midFirst < first) {
+                    low = mid + 1;
+                } else if (midFirst > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
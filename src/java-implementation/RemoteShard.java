@@ -0,0 +1,175 @@
+package autocomplete;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * ShardedIndex shard living in a ShardServer process, reached over TCP.
+ * 
+ * Calls are synchronous request/response exchanges (see ShardServer for the protocol).
+ * Up to poolSize connections are opened on demand and reused, so concurrent callers do
+ * not queue behind one socket. Connection failures surface as UncheckedIOException.
+ */
+public class RemoteShard implements ShardedIndex.Shard, Closeable {
+    private final InetSocketAddress address;
+    private final BlockingQueue<Connection> idle;
+    private final int suggestionLimit;
+    private volatile boolean closed;
+    
+    public RemoteShard(InetSocketAddress address, int poolSize) throws IOException {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+        }
+        this.address = Objects.requireNonNull(address, "address");
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+        Connection first = new Connection(address);
+        try {
+            this.suggestionLimit = Integer.parseInt(first.call("LIMIT"));
+        } catch (IOException | RuntimeException e) {
+            first.close();
+            throw e;
+        }
+        this.idle.add(first);
+    }
+    
+    private static final class Connection implements Closeable {
+        final Socket socket;
+        final BufferedReader in;
+        final Writer out;
+        
+        Connection(InetSocketAddress address) throws IOException {
+            this.socket = new Socket();
+            this.socket.connect(address);
+            this.socket.setTcpNoDelay(true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+        
+        String call(String request) throws IOException {
+            out.write(request);
+            out.write('\n');
+            out.flush();
+            return readReply();
+        }
+        
+        String readReply() throws IOException {
+            String reply = in.readLine();
+            if (reply == null) throw new EOFException("Shard closed the connection");
+            if (reply.startsWith("ERR ")) throw new IOException("Shard error: " + reply.substring(4));
+            return reply;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+    
+    private interface Exchange<T> {
+        T run(Connection connection) throws IOException;
+    }
+    
+    /**
+     * Run one exchange on an idle connection (or a new one), returning it to the pool
+     * afterwards unless it failed. A connection that failed in any way (including a
+     * malformed reply) is closed, since its stream may be left partway through a reply.
+     */
+    private <T> T exchange(Exchange<T> exchange) {
+        if (closed) throw new IllegalStateException("RemoteShard is closed");
+        Connection connection = idle.poll();
+        boolean pooled = false;
+        try {
+            if (connection == null) {
+                connection = new Connection(address);
+            }
+            T result = exchange.run(connection);
+            pooled = idle.offer(connection);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Shard " + address + ": " + e.getMessage(), e);
+        } finally {
+            if (!pooled && connection != null) {
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                    // Not reused either way
+                }
+            }
+        }
+    }
+    
+    private static String field(String value) {
+        if (value.indexOf('\t') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Words must not contain tabs or line breaks");
+        }
+        return value;
+    }
+    
+    @Override
+    public void insert(String word, int frequency) {
+        String request = "INSERT\t" + field(word) + "\t" + frequency;
+        exchange(connection -> connection.call(request));
+    }
+    
+    @Override
+    public void updateFrequency(String word, int increment) {
+        String request = "UPDATE\t" + field(word) + "\t" + increment;
+        exchange(connection -> connection.call(request));
+    }
+    
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        String request = "SEARCH\t" + field(prefix);
+        return exchange(connection -> {
+            int count = Integer.parseInt(connection.call(request));
+            return ShardServer.readWords(connection.in, count);
+        });
+    }
+    
+    @Override
+    public List<WordFrequency> getAllWords() {
+        return exchange(connection -> {
+            int count = Integer.parseInt(connection.call("ALL"));
+            return ShardServer.readWords(connection.in, count);
+        });
+    }
+    
+    @Override
+    public int wordCount() {
+        return exchange(connection -> Integer.parseInt(connection.call("COUNT")));
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+    
+    @Override
+    public void stage(List<WordFrequency> words) {
+        exchange(connection -> {
+            connection.out.write("STAGE\n");
+            ShardServer.writeWords(words, connection.out);
+            connection.out.flush();
+            return connection.readReply();
+        });
+    }
+    
+    @Override
+    public void commit() {
+        exchange(connection -> connection.call("COMMIT"));
+    }
+    
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * Reusable buffer for allocation-free searches (see Trie.search(CharSequence, ResultSink)):
+ * up to capacity words with their frequencies, best ranked first. Each search replaces
+ * the contents. The sink also keeps the scratch queue best-first search works in, so
+ * after the first few queries a Trie search through it allocates nothing. Not
+ * thread-safe: give each thread its own sink.
+ */
+public final class ResultSink {
+    private final String[] words;
+    private final int[] frequencies;
+    private int size;
+    private BestFirstQueue queue;
+    
+    public ResultSink(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.words = new String[capacity];
+        this.frequencies = new int[capacity];
+    }
+    
+    public int capacity() {
+        return words.length;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public String word(int index) {
+        return words[Objects.checkIndex(index, size)];
+    }
+    
+    public int frequency(int index) {
+        return frequencies[Objects.checkIndex(index, size)];
+    }
+    
+    public void clear() {
+        Arrays.fill(words, 0, size, null);
+        size = 0;
+    }
+    
+    /**
+     * Copy of the contents as a list, for callers that want the List form search(String)
+     * returns (allocates)
+     */
+    public List<WordFrequency> toList() {
+        List<WordFrequency> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(new WordFrequency(words[i], frequencies[i]));
+        }
+        return results;
+    }
+    
+    /**
+     * Append a word unless the sink is full; false if it was full
+     */
+    boolean add(String word, int frequency) {
+        if (size == words.length) return false;
+        words[size] = word;
+        frequencies[size] = frequency;
+        size++;
+        return true;
+    }
+    
+    BestFirstQueue queue() {
+        if (queue == null) {
+            queue = new BestFirstQueue();
+        }
+        return queue;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) text.append(", ");
+            text.append(words[i]).append(" (freq: ").append(frequencies[i]).append(')');
+        }
+        return text.append(']').toString();
+    }
+}
\ No newline at end of file
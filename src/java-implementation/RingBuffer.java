@@ -0,0 +1,47 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * Fixed-capacity buffer of the most recent items: add() is O(1) and overwrites the
+ * oldest item once full, so memory never grows past capacity. Thread-safe.
+ */
+final class RingBuffer<E> {
+    private final Object[] items;
+    private int next;
+    private int size;
+    
+    RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.items = new Object[capacity];
+    }
+    
+    synchronized void add(E item) {
+        items[next] = item;
+        next = (next + 1) % items.length;
+        size = Math.min(size + 1, items.length);
+    }
+    
+    synchronized int size() {
+        return size;
+    }
+    
+    int capacity() {
+        return items.length;
+    }
+    
+    /**
+     * Up to limit items, most recent first
+     */
+    @SuppressWarnings("unchecked")
+    synchronized List<E> newestFirst(int limit) {
+        int count = Math.max(0, Math.min(limit, size));
+        List<E> result = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            result.add((E) items[(next - i + items.length) % items.length]);
+        }
+        return result;
+    }
+}
\ No newline at end of file
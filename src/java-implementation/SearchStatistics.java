@@ -0,0 +1,51 @@
+package autocomplete;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-index search counters: how many trie nodes each search touched and how many
+ * candidate words it produced before the result was cut to K. Only allocated while
+ * instrumentation is on (EngineMetrics.ENABLED); adders keep concurrent searches from
+ * contending on one counter.
+ */
+final class SearchStatistics {
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder nodesVisited = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+    private final AtomicLong maxNodesVisited = new AtomicLong();
+    private final AtomicLong maxCandidates = new AtomicLong();
+    
+    void record(int nodes, int candidateCount) {
+        searches.increment();
+        nodesVisited.add(nodes);
+        candidates.add(candidateCount);
+        // Read first: the maxima settle quickly, so most searches never write them
+        if (nodes > maxNodesVisited.get()) {
+            maxNodesVisited.accumulateAndGet(nodes, Math::max);
+        }
+        if (candidateCount > maxCandidates.get()) {
+            maxCandidates.accumulateAndGet(candidateCount, Math::max);
+        }
+    }
+    
+    long searches() {
+        return searches.sum();
+    }
+    
+    long nodesVisited() {
+        return nodesVisited.sum();
+    }
+    
+    long candidates() {
+        return candidates.sum();
+    }
+    
+    long maxNodesVisited() {
+        return maxNodesVisited.get();
+    }
+    
+    long maxCandidates() {
+        return maxCandidates.get();
+    }
+}
@@ -0,0 +1,195 @@
+package autocomplete;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous, batched pipeline for suggestion selections.
+ * 
+ * submit() is a bounded queue offer. A background thread drains up to maxBatch queued
+ * selections at a time, folds repeated words into one delta each and hands the batch
+ * to the handler, so a hot word costs one trie walk per batch instead of one per click.
+ * When the queue is full the backpressure policy decides what happens to a new
+ * selection. Batches are applied one at a time, in submission order: whoever applies a
+ * batch (the worker, or a caller under CALLER_RUNS) takes it from the head of the queue
+ * and applies it under one lock, so no batch can overtake an older one.
+ */
+public class SelectionPipeline implements AutoCloseable {
+    /**
+     * What submit() does when the queue is full
+     */
+    public enum BackpressurePolicy {
+        // Wait for room in the queue
+        BLOCK,
+        // Discard the selection and count it in droppedSelections()
+        DROP,
+        // Apply the oldest queued batch on the calling thread to make room, then queue
+        CALLER_RUNS
+    }
+    
+    /**
+     * Receives one batch: a delta per distinct word (first-selected order) plus
+     * every selection in submission order
+     */
+    public interface BatchHandler {
+        void applyBatch(Map<String, Integer> deltas, List<String> selections);
+    }
+    
+    private final ArrayBlockingQueue<String> queue;
+    private final int maxBatch;
+    private final BackpressurePolicy policy;
+    private final BatchHandler handler;
+    private final Thread worker;
+    // Held from taking a batch off the queue until it is applied, so batches stay in order
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final Object applyLock = new Object();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Guarded by applyLock
+    private long applied;
+    private volatile boolean closed;
+    
+    public SelectionPipeline(int capacity, int maxBatch, BackpressurePolicy policy, BatchHandler handler) {
+        if (capacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("capacity and maxBatch must be positive");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.handler = Objects.requireNonNull(handler, "handler");
+        this.worker = new Thread(this::run, "selection-pipeline");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+    
+    /**
+     * Queue a selection; returns false only if it was dropped
+     */
+    public boolean submit(String word) {
+        if (closed) throw new IllegalStateException("SelectionPipeline is closed");
+        submitted.incrementAndGet();
+        if (queue.offer(word)) return true;
+        
+        switch (policy) {
+            case BLOCK:
+                try {
+                    queue.put(word);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    countAsApplied(1);
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            case CALLER_RUNS: {
+                // Queueing behind the older selections keeps submission order
+                List<String> batch = new ArrayList<>(maxBatch);
+                do {
+                    drainLock.lock();
+                    try {
+                        queue.drainTo(batch, maxBatch);
+                        apply(batch);
+                    } finally {
+                        drainLock.unlock();
+                        batch.clear();
+                    }
+                } while (!queue.offer(word));
+                return true;
+            }
+            default:
+                countAsApplied(1);
+                dropped.incrementAndGet();
+                return false;
+        }
+    }
+    
+    private void run() {
+        List<String> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            drainLock.lock();
+            try {
+                String first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                // close() interrupts only to cut the poll short; keep draining
+            } finally {
+                drainLock.unlock();
+                batch.clear();
+            }
+        }
+    }
+    
+    /**
+     * Fold a batch into deltas and hand it to the handler (caller holds drainLock). The
+     * batch counts as applied even if the handler fails, so flush() never waits for it.
+     */
+    private void apply(List<String> batch) {
+        if (batch.isEmpty()) return;
+        Map<String, Integer> deltas = new LinkedHashMap<>();
+        for (String word : batch) {
+            deltas.merge(word, 1, Integer::sum);
+        }
+        synchronized (applyLock) {
+            try {
+                handler.applyBatch(deltas, batch);
+            } catch (RuntimeException e) {
+                System.err.println("Dropped a batch of " + batch.size() + " selections: " + e);
+            } finally {
+                applied += batch.size();
+                applyLock.notifyAll();
+            }
+        }
+    }
+    
+    private void countAsApplied(int count) {
+        synchronized (applyLock) {
+            applied += count;
+            applyLock.notifyAll();
+        }
+    }
+    
+    /**
+     * Block until every selection submitted before this call has been applied (or dropped)
+     */
+    public void flush() throws InterruptedException {
+        long target = submitted.get();
+        synchronized (applyLock) {
+            while (applied < target) {
+                if (!worker.isAlive()) throw new IllegalStateException("SelectionPipeline worker has stopped");
+                applyLock.wait(100);
+            }
+        }
+    }
+    
+    /**
+     * Selections waiting in the queue
+     */
+    public int queuedSelections() {
+        return queue.size();
+    }
+    
+    public long droppedSelections() {
+        return dropped.get();
+    }
+    
+    /**
+     * Stop accepting selections, apply everything queued and stop the worker. If the
+     * calling thread is interrupted it stops waiting and keeps its interrupt status.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package autocomplete;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Serves one ShardedIndex shard to RemoteShard clients over TCP, so a dictionary can be
+ * spread over several local processes:
+ * 
+ *   java autocomplete.ShardServer &lt;port&gt; [suggestionLimit]
+ * 
+ * The protocol is one UTF-8 request line per call, fields separated by tabs:
+ *   INSERT word freq | UPDATE word increment | SEARCH prefix | ALL | COUNT | LIMIT |
+ *   STAGE (followed by a word list) | COMMIT
+ * A word list is a count line followed by that many "word\tfreq" lines. Writes, STAGE and
+ * COMMIT answer "OK", SEARCH/ALL answer a word list, COUNT and LIMIT answer the number and
+ * a failure answers "ERR message" (the client then drops the connection).
+ * Each connection is served by its own thread; the shard's Trie is guarded by a lock,
+ * except while a rebalance stages new contents, so searches continue during STAGE.
+ */
+public class ShardServer implements AutoCloseable {
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+    
+    private final ServerSocket serverSocket;
+    private final ShardedIndex.LocalShard shard;
+    // Trie is not thread-safe; staging builds a separate index and does not take this lock
+    private final Object indexLock = new Object();
+    private final Thread acceptor;
+    private final Set<Socket> connections = Collections.synchronizedSet(new HashSet<>());
+    private volatile boolean closed;
+    
+    public ShardServer(InetSocketAddress address, int suggestionLimit) throws IOException {
+        this.shard = new ShardedIndex.LocalShard(() -> new Trie(suggestionLimit));
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address);
+        this.acceptor = new Thread(this::acceptLoop, "shard-server-" + getPort());
+        this.acceptor.start();
+    }
+    
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    private void acceptLoop() {
+        // Back off while accept keeps failing (e.g. out of file descriptors) instead of
+        // spinning; the delay doubles up to MAX_ACCEPT_BACKOFF_MILLIS and resets on success
+        long backoffMillis = 0;
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                backoffMillis = 0;
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread worker = new Thread(() -> serve(socket), "shard-connection");
+                worker.setDaemon(true);
+                worker.start();
+            } catch (IOException e) {
+                if (closed) return;
+                backoffMillis = Math.min(MAX_ACCEPT_BACKOFF_MILLIS, Math.max(1, backoffMillis * 2));
+                System.err.println("Shard server accept failed, retrying in " + backoffMillis + " ms: " + e.getMessage());
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    private void serve(Socket socket) {
+        try (Socket connection = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                try {
+                    handle(line.split("\t", -1), in, out);
+                } catch (RuntimeException e) {
+                    out.write("ERR " + String.valueOf(e.getMessage()).replace('\n', ' ') + "\n");
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            connections.remove(socket);
+        }
+    }
+    
+    private void handle(String[] request, BufferedReader in, Writer out) throws IOException {
+        switch (request[0]) {
+            case "INSERT":
+                synchronized (indexLock) {
+                    shard.insert(request[1], Integer.parseInt(request[2]));
+                }
+                out.write("OK\n");
+                break;
+            case "UPDATE":
+                synchronized (indexLock) {
+                    shard.updateFrequency(request[1], Integer.parseInt(request[2]));
+                }
+                out.write("OK\n");
+                break;
+            case "SEARCH": {
+                List<WordFrequency> results;
+                synchronized (indexLock) {
+                    results = shard.search(request[1]);
+                }
+                writeWords(results, out);
+                break;
+            }
+            case "ALL": {
+                List<WordFrequency> results;
+                synchronized (indexLock) {
+                    results = shard.getAllWords();
+                }
+                writeWords(results, out);
+                break;
+            }
+            case "COUNT": {
+                int count;
+                synchronized (indexLock) {
+                    count = shard.wordCount();
+                }
+                out.write(count + "\n");
+                break;
+            }
+            case "LIMIT":
+                out.write(shard.getSuggestionLimit() + "\n");
+                break;
+            case "STAGE": {
+                String count = in.readLine();
+                if (count == null) throw new EOFException("Connection closed before the staged words");
+                List<WordFrequency> words = readWords(in, Integer.parseInt(count));
+                shard.stage(words);
+                out.write("OK\n");
+                break;
+            }
+            case "COMMIT":
+                synchronized (indexLock) {
+                    shard.commit();
+                }
+                out.write("OK\n");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + request[0]);
+        }
+    }
+    
+    static void writeWords(List<WordFrequency> words, Writer out) throws IOException {
+        out.write(words.size() + "\n");
+        for (WordFrequency entry : words) {
+            out.write(entry.word);
+            out.write('\t');
+            out.write(Integer.toString(entry.frequency));
+            out.write('\n');
+        }
+    }
+    
+    static List<WordFrequency> readWords(BufferedReader in, int count) throws IOException {
+        List<WordFrequency> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String line = in.readLine();
+            if (line == null) throw new EOFException("Connection closed after " + i + " of " + count + " words");
+            int tab = line.lastIndexOf('\t');
+            words.add(new WordFrequency(line.substring(0, tab), Integer.parseInt(line.substring(tab + 1))));
+        }
+        return words;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        acceptor.interrupt();
+        synchronized (connections) {
+            for (Socket socket : connections) {
+                socket.close();
+            }
+        }
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java autocomplete.ShardServer <port> [suggestionLimit]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        int limit = args.length > 1 ? Integer.parseInt(args[1]) : Trie.DEFAULT_SUGGESTION_LIMIT;
+        ShardServer server = new ShardServer(new InetSocketAddress(port), limit);
+        System.out.println("Shard listening on port " + server.getPort());
+    }
+}
\ No newline at end of file
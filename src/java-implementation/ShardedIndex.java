@@ -0,0 +1,393 @@
+package autocomplete;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * PrefixIndex split by word range across N shards, in this process (LocalShard) or in
+ * separate ShardServer processes (RemoteShard).
+ * 
+ * Shard i holds the words w with bounds[i - 1] &lt;= w &lt; bounds[i]. Every word starting
+ * with a prefix p sorts between p and p + '\uffff', so a prefix maps to one contiguous
+ * run of shards: a prefix inside one shard is routed there directly, a short prefix that
+ * spans several is sent to each of them (in parallel on the fan-out executor) and their
+ * top K lists are combined with a K-way merge. Each shard's list is already ranked, so
+ * the merge takes at most K heads and equals a search over one unsharded index.
+ * 
+ * Every few thousand writes a background thread asks each shard for its word count. When
+ * the largest shard holds more than skewFactor times the average, that thread
+ * rebalances: it reads every word (so the whole vocabulary passes through this process
+ * once), picks new bounds at the quantiles of the sorted vocabulary, stages each shard's
+ * new contents and then commits all shards and swaps the bounds. If the quantiles equal
+ * the current bounds nothing is moved. Writes wait for a running rebalance; searches
+ * keep running on the old contents until the commit, which may make a search in that
+ * instant miss a word that is moving between shards.
+ * 
+ * Writes to different words run concurrently, so shards must be safe for concurrent
+ * writers when the index is shared by threads (RemoteShard is; LocalShard is as safe as
+ * the indexes it makes).
+ */
+public class ShardedIndex implements PrefixIndex, Closeable {
+    private static final int SKEW_CHECK_INTERVAL = 4096;
+    // Shards below this size are never worth moving words around for
+    private static final long MIN_REBALANCE_WORDS = 1024;
+    
+    /**
+     * One shard: a PrefixIndex whose contents can be replaced wholesale in two phases,
+     * so all shards switch to a new partition at (nearly) the same moment
+     */
+    public interface Shard extends PrefixIndex {
+        /**
+         * Prepare replacement contents without changing what searches see
+         */
+        void stage(List<WordFrequency> words);
+        
+        /**
+         * Swap the staged contents in
+         */
+        void commit();
+    }
+    
+    /**
+     * In-process shard holding its words in an index from a factory
+     */
+    public static class LocalShard implements Shard {
+        private final Supplier<? extends PrefixIndex> indexFactory;
+        private volatile PrefixIndex index;
+        private PrefixIndex staged;
+        
+        public LocalShard(Supplier<? extends PrefixIndex> indexFactory) {
+            this.indexFactory = Objects.requireNonNull(indexFactory, "indexFactory");
+            this.index = indexFactory.get();
+        }
+        
+        @Override
+        public void insert(String word, int frequency) {
+            index.insert(word, frequency);
+        }
+        
+        @Override
+        public void updateFrequency(String word, int increment) {
+            index.updateFrequency(word, increment);
+        }
+        
+        @Override
+        public List<WordFrequency> search(String prefix) {
+            return index.search(prefix);
+        }
+        
+        @Override
+        public List<WordFrequency> getAllWords() {
+            return index.getAllWords();
+        }
+        
+        @Override
+        public int wordCount() {
+            return index.wordCount();
+        }
+        
+        @Override
+        public int getSuggestionLimit() {
+            return index.getSuggestionLimit();
+        }
+        
+        @Override
+        public synchronized void stage(List<WordFrequency> words) {
+            PrefixIndex fresh = indexFactory.get();
+            for (WordFrequency entry : words) {
+                restore(fresh, entry);
+            }
+            staged = fresh;
+        }
+        
+        @Override
+        public synchronized void commit() {
+            if (staged == null) throw new IllegalStateException("Nothing staged");
+            index = staged;
+            staged = null;
+        }
+    }
+    
+    private final List<Shard> shards;
+    private final int suggestionLimit;
+    private final double skewFactor;
+    private final Executor fanOutExecutor;
+    private final ReentrantReadWriteLock rebalanceLock = new ReentrantReadWriteLock();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong rebalances = new AtomicLong();
+    private final AtomicBoolean rebalanceRunning = new AtomicBoolean();
+    private volatile Thread rebalancer;
+    // Shard i holds the words w with bounds[i - 1] <= w < bounds[i]; replaced, never mutated
+    private volatile String[] bounds;
+    
+    /**
+     * Shard over the given shards with initial bounds spread evenly over 'a'-'z'.
+     * A rebalance starts once the largest shard holds skewFactor times the average
+     * (values &lt;= 1 disable it). Multi-shard searches run on fanOutExecutor; pass
+     * Runnable::run to query shards one after another on the calling thread.
+     */
+    public ShardedIndex(List<? extends Shard> shards, double skewFactor, Executor fanOutExecutor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.suggestionLimit = shards.get(0).getSuggestionLimit();
+        this.skewFactor = skewFactor;
+        this.fanOutExecutor = Objects.requireNonNull(fanOutExecutor, "fanOutExecutor");
+        this.bounds = evenBounds(shards.size());
+    }
+    
+    /**
+     * count in-process shards made by indexFactory, searched on the calling thread
+     */
+    public static ShardedIndex local(int count, Supplier<? extends PrefixIndex> indexFactory) {
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shards.add(new LocalShard(indexFactory));
+        }
+        return new ShardedIndex(shards, 2.0, Runnable::run);
+    }
+    
+    private static String[] evenBounds(int shardCount) {
+        String[] bounds = new String[shardCount - 1];
+        for (int i = 1; i < shardCount; i++) {
+            bounds[i - 1] = String.valueOf((char) ('a' + 26 * i / shardCount));
+        }
+        return bounds;
+    }
+    
+    public int shardCount() {
+        return shards.size();
+    }
+    
+    /**
+     * Current shard bounds: shard i starts at bounds[i - 1]
+     */
+    public List<String> bounds() {
+        return Collections.unmodifiableList(Arrays.asList(bounds));
+    }
+    
+    public long rebalanceCount() {
+        return rebalances.get();
+    }
+    
+    @Override
+    public void insert(String word, int frequency) {
+        if (word == null || word.isEmpty()) return;
+        write(word.toLowerCase(), (shard, lowerWord) -> shard.insert(lowerWord, frequency));
+    }
+    
+    @Override
+    public void updateFrequency(String word, int increment) {
+        if (word == null || word.isEmpty()) return;
+        write(word.toLowerCase(), (shard, lowerWord) -> shard.updateFrequency(lowerWord, increment));
+    }
+    
+    private interface ShardWrite {
+        void apply(Shard shard, String lowerWord);
+    }
+    
+    private void write(String lowerWord, ShardWrite write) {
+        rebalanceLock.readLock().lock();
+        try {
+            write.apply(shards.get(shardOf(bounds, lowerWord)), lowerWord);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+        if (writes.incrementAndGet() % SKEW_CHECK_INTERVAL == 0 && skewFactor > 1 && shards.size() > 1
+                && rebalanceRunning.compareAndSet(false, true)) {
+            // Counting and moving words talks to every shard; keep it off the writer's path
+            Thread thread = new Thread(() -> {
+                try {
+                    if (isSkewed()) {
+                        rebalance();
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Shard rebalance failed: " + e.getMessage());
+                } finally {
+                    rebalanceRunning.set(false);
+                }
+            }, "shard-rebalance");
+            thread.setDaemon(true);
+            rebalancer = thread;
+            thread.start();
+        }
+    }
+    
+    private static int shardOf(String[] bounds, String word) {
+        int index = Arrays.binarySearch(bounds, word);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+    
+    /**
+     * Whether the largest shard holds more than skewFactor times the average, by the
+     * shards' actual word counts
+     */
+    private boolean isSkewed() {
+        long total = 0;
+        long max = 0;
+        for (Shard shard : shards) {
+            int count = shard.wordCount();
+            total += count;
+            max = Math.max(max, count);
+        }
+        return max >= MIN_REBALANCE_WORDS && max > skewFactor * total / shards.size();
+    }
+    
+    /**
+     * Repartition every word so each shard holds an equal share of the vocabulary. Does
+     * nothing when the shards are already split at the quantiles.
+     */
+    public void rebalance() {
+        rebalanceLock.writeLock().lock();
+        try {
+            List<WordFrequency> all = new ArrayList<>();
+            for (Shard shard : shards) {
+                all.addAll(shard.getAllWords());
+            }
+            all.sort(Comparator.comparing(entry -> entry.word));
+            
+            int count = shards.size();
+            String[] quantiles = new String[count - 1];
+            int[] ends = new int[count];
+            for (int i = 0; i < count; i++) {
+                ends[i] = i == count - 1 ? all.size() : (int) ((long) all.size() * (i + 1) / count);
+                if (i < count - 1) {
+                    // An empty shard still needs a bound above the previous one
+                    quantiles[i] = ends[i] < all.size() ? all.get(ends[i]).word
+                                 : (i > 0 ? quantiles[i - 1] : "") + '\uffff';
+                }
+            }
+            if (Arrays.equals(quantiles, bounds)) return;
+            
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                shards.get(i).stage(all.subList(start, ends[i]));
+                start = ends[i];
+            }
+            for (Shard shard : shards) {
+                shard.commit();
+            }
+            bounds = quantiles;
+            rebalances.incrementAndGet();
+        } finally {
+            rebalanceLock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        if (prefix == null || prefix.isEmpty()) return new ArrayList<>();
+        String lowerPrefix = prefix.toLowerCase();
+        String[] current = bounds;
+        int first = shardOf(current, lowerPrefix);
+        int last = shardOf(current, lowerPrefix + '\uffff');
+        if (first == last) {
+            return shards.get(first).search(lowerPrefix);
+        }
+        
+        List<CompletableFuture<List<WordFrequency>>> pending = new ArrayList<>();
+        for (int i = first; i <= last; i++) {
+            Shard shard = shards.get(i);
+            pending.add(CompletableFuture.supplyAsync(() -> shard.search(lowerPrefix), fanOutExecutor));
+        }
+        List<List<WordFrequency>> lists = new ArrayList<>();
+        for (CompletableFuture<List<WordFrequency>> result : pending) {
+            lists.add(result.join());
+        }
+        return merge(lists, suggestionLimit);
+    }
+    
+    /**
+     * K-way merge of ranked lists into the top limit entries; a word that briefly sits in
+     * two shards during a rebalance is taken once
+     */
+    static List<WordFrequency> merge(List<List<WordFrequency>> lists, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                WordFrequency.RANKING.compare(lists.get(a[0]).get(a[1]), lists.get(b[0]).get(b[1])));
+        for (int i = 0; i < lists.size(); i++) {
+            if (!lists.get(i).isEmpty()) heads.add(new int[] {i, 0});
+        }
+        
+        List<WordFrequency> results = new ArrayList<>();
+        Set<String> taken = new HashSet<>();
+        while (!heads.isEmpty() && results.size() < limit) {
+            int[] head = heads.poll();
+            List<WordFrequency> list = lists.get(head[0]);
+            WordFrequency entry = list.get(head[1]);
+            if (taken.add(entry.word)) {
+                results.add(entry);
+            }
+            if (head[1] + 1 < list.size()) {
+                heads.add(new int[] {head[0], head[1] + 1});
+            }
+        }
+        return results;
+    }
+    
+    @Override
+    public List<WordFrequency> getAllWords() {
+        List<WordFrequency> results = new ArrayList<>();
+        for (Shard shard : shards) {
+            results.addAll(shard.getAllWords());
+        }
+        results.sort((a, b) -> Integer.compare(b.frequency, a.frequency));
+        return results;
+    }
+    
+    /**
+     * Sum of the shards' word counts; each shard counts its own, no words are fetched
+     */
+    @Override
+    public int wordCount() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.wordCount();
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+    
+    /**
+     * Put a word into an empty index with exactly the given frequency, even a negative one
+     */
+    static void restore(PrefixIndex index, WordFrequency entry) {
+        index.insert(entry.word, entry.frequency);
+        if (entry.frequency < 0) {
+            // insert keeps at least 0; an update on an existing word moves it from there
+            index.updateFrequency(entry.word, entry.frequency);
+        }
+    }
+    
+    /**
+     * Finish any running rebalance, then close every shard that holds resources
+     * (connections to shard processes)
+     */
+    @Override
+    public void close() throws IOException {
+        Thread running = rebalancer;
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Shard shard : shards) {
+            if (shard instanceof Closeable) {
+                ((Closeable) shard).close();
+            }
+        }
+    }
+}
\ No newline at end of file
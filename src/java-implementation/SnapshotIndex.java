@@ -0,0 +1,185 @@
+package autocomplete;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Copy-on-write index for read-mostly serving.
+ * 
+ * Queries are answered from an immutable FrozenTrie snapshot held in a volatile field:
+ * readers never lock and always see one complete snapshot. Writes are appended to a
+ * lock-free delta queue and return immediately. A rebuild (publish) drains the delta
+ * into a private mutable Trie, freezes that into a new snapshot and swaps it in with a
+ * single reference write. A background thread publishes every refresh interval while
+ * writes are pending; call publish() to make writes visible right away.
+ * 
+ * Writes are therefore not visible to search until the next publish.
+ * 
+ * The first snapshot can be any read-only index, e.g. a MappedTrie opened from disk.
+ * Its words are copied into the master Trie only when the first write is published,
+ * so a process that only reads never materializes the dictionary on the heap.
+ */
+public class SnapshotIndex implements PrefixIndex, Closeable {
+    private final int suggestionLimit;
+    private final Trie master;
+    private final ConcurrentLinkedQueue<Update> delta = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private final ScheduledExecutorService refresher;
+    private volatile PrefixIndex snapshot;
+    private boolean masterSeeded;
+    private volatile Consumer<Set<String>> publishListener;
+    
+    /**
+     * Create an index that publishes pending writes every refreshMillis (0 = only on publish())
+     */
+    public SnapshotIndex(int suggestionLimit, long refreshMillis) {
+        this(new FrozenTrie(Collections.emptyList(), suggestionLimit), suggestionLimit, refreshMillis);
+    }
+    
+    /**
+     * Create an index that serves base until the first publish
+     */
+    public SnapshotIndex(PrefixIndex base, int suggestionLimit, long refreshMillis) {
+        this.suggestionLimit = suggestionLimit;
+        // The master is only read when freezing, so it uses the smallest Trie layout
+        this.master = new Trie(suggestionLimit, Trie.SearchMode.BEST_FIRST, Trie.NodeLayout.SORTED_ARRAY);
+        this.snapshot = Objects.requireNonNull(base, "base");
+        
+        if (refreshMillis > 0) {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.refresher.scheduleWithFixedDelay(() -> {
+                if (pendingUpdates.get() > 0) publish();
+            }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.refresher = null;
+        }
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+    
+    /**
+     * Writes accepted but not yet visible to search
+     */
+    public int pendingUpdates() {
+        return pendingUpdates.get();
+    }
+    
+    /**
+     * Called after each publish with the (lower-cased) words that publish changed
+     */
+    public void setPublishListener(Consumer<Set<String>> listener) {
+        this.publishListener = listener;
+    }
+    
+    /**
+     * Currently published snapshot
+     */
+    public PrefixIndex snapshot() {
+        return snapshot;
+    }
+    
+    @Override
+    public void insert(String word, int frequency) {
+        if (word == null || word.isEmpty()) return;
+        delta.add(new Update(word, frequency, true));
+        pendingUpdates.incrementAndGet();
+    }
+    
+    @Override
+    public void updateFrequency(String word, int increment) {
+        if (word == null || word.isEmpty()) return;
+        delta.add(new Update(word, increment, false));
+        pendingUpdates.incrementAndGet();
+    }
+    
+    /**
+     * Merge all pending writes into the master Trie and atomically swap in a new snapshot.
+     * The snapshot is frozen from one lexicographic walk of the master, so a publish is
+     * linear in the dictionary with no sorting. Rebuilds are serialized; readers keep
+     * using the old snapshot until the swap.
+     */
+    public synchronized void publish() {
+        if (delta.isEmpty()) return;
+        if (!masterSeeded) {
+            for (WordFrequency wf : snapshot.getAllWords()) {
+                master.insert(wf.word, wf.frequency);
+            }
+            masterSeeded = true;
+        }
+        
+        int applied = 0;
+        Set<String> changed = new HashSet<>();
+        Update update;
+        while ((update = delta.poll()) != null) {
+            changed.add(update.word.toLowerCase());
+            if (update.isInsert) {
+                master.insert(update.word, update.value);
+            } else {
+                master.updateFrequency(update.word, update.value);
+            }
+            applied++;
+        }
+        if (applied == 0) return;
+        
+        snapshot = FrozenTrie.fromSorted(master.iterator("", WordPage.Order.LEXICOGRAPHIC), suggestionLimit);
+        pendingUpdates.addAndGet(-applied);
+        
+        Consumer<Set<String>> listener = publishListener;
+        if (listener != null) {
+            listener.accept(changed);
+        }
+    }
+    
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        return snapshot.search(prefix);
+    }
+    
+    @Override
+    public List<WordFrequency> getAllWords() {
+        return snapshot.getAllWords();
+    }
+    
+    /**
+     * Words in the published snapshot
+     */
+    @Override
+    public int wordCount() {
+        return snapshot.wordCount();
+    }
+    
+    /**
+     * Stop the background refresh; pending writes stay queued until publish() is called
+     */
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+    
+    private static final class Update {
+        final String word;
+        final int value;
+        final boolean isInsert;
+        
+        Update(String word, int value, boolean isInsert) {
+            this.word = word;
+            this.value = value;
+            this.isInsert = isInsert;
+        }
+    }
+}
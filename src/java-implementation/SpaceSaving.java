@@ -0,0 +1,133 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * Space-Saving heavy-hitter tracker: the most frequent keys of a stream with a fixed
+ * number of counters.
+ * 
+ * When a new key arrives and every counter is taken, it replaces the key with the
+ * smallest count and inherits that count as its possible overestimate (error). Any key
+ * whose true count exceeds total / capacity is guaranteed to be tracked, and each
+ * reported count is at most error above the true one. Counters sit in a min-heap indexed
+ * by key, so an update costs O(log capacity) for a fixed capacity. Thread-safe.
+ */
+public final class SpaceSaving {
+    /**
+     * One tracked key: count is never below its true count and at most error above it
+     */
+    public static final class Counter {
+        private final String key;
+        private long count;
+        private long error;
+        private int slot;
+        
+        Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+        
+        public String getKey() {
+            return key;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getError() {
+            return error;
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + count + (error > 0 ? " (+-" + error + ")" : "");
+        }
+    }
+    
+    private final Counter[] heap;
+    private final Map<String, Counter> counters;
+    private int size;
+    
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.heap = new Counter[capacity];
+        this.counters = new HashMap<>(capacity * 2);
+    }
+    
+    public int capacity() {
+        return heap.length;
+    }
+    
+    /**
+     * Add count (which must be positive) to key
+     */
+    public synchronized void add(String key, long count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive: " + count);
+        }
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += count;
+            siftDown(counter.slot);
+        } else if (size < heap.length) {
+            counter = new Counter(key, count, 0);
+            counter.slot = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.slot);
+        } else {
+            Counter evicted = heap[0];
+            counters.remove(evicted.key);
+            counter = new Counter(key, evicted.count + count, evicted.count);
+            counter.slot = 0;
+            heap[0] = counter;
+            counters.put(key, counter);
+            siftDown(0);
+        }
+    }
+    
+    /**
+     * The n tracked keys with the highest counts, highest first (copies)
+     */
+    public synchronized List<Counter> top(int n) {
+        List<Counter> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new Counter(heap[i].key, heap[i].count, heap[i].error));
+        }
+        result.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : a.key.compareTo(b.key));
+        return result.subList(0, Math.min(Math.max(0, n), result.size()));
+    }
+    
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (heap[parent].count <= heap[slot].count) return;
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+    
+    private void siftDown(int slot) {
+        while (true) {
+            int smallest = slot;
+            for (int child = 2 * slot + 1; child <= 2 * slot + 2 && child < size; child++) {
+                if (heap[child].count < heap[smallest].count) smallest = child;
+            }
+            if (smallest == slot) return;
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+    
+    private void swap(int a, int b) {
+        Counter counter = heap[a];
+        heap[a] = heap[b];
+        heap[b] = counter;
+        heap[a].slot = a;
+        heap[b].slot = b;
+    }
+}
\ No newline at end of file
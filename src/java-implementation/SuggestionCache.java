@@ -0,0 +1,111 @@
+package autocomplete;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of suggestion lists keyed by lower-cased prefix.
+ * 
+ * When a word changes, only the entries for that word's own prefixes can have changed,
+ * so invalidate(word) removes at most word.length() entries and leaves the rest of the
+ * cache warm. A lookup that misses while any invalidation happens does not store its
+ * result, so a result computed before a write can never be cached after it.
+ */
+public class SuggestionCache {
+    private final int capacity;
+    private final LinkedHashMap<String, List<WordFrequency>> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    
+    public SuggestionCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, List<WordFrequency>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<WordFrequency>> eldest) {
+                if (size() <= SuggestionCache.this.capacity) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+    
+    /**
+     * Cached suggestions for prefix, computing and caching them with loader on a miss
+     */
+    public List<WordFrequency> get(String prefix, Function<String, List<WordFrequency>> loader) {
+        String key = prefix.toLowerCase();
+        synchronized (this) {
+            List<WordFrequency> cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        
+        misses.incrementAndGet();
+        long stamp = invalidations.get();
+        List<WordFrequency> loaded = Collections.unmodifiableList(new ArrayList<>(loader.apply(prefix)));
+        synchronized (this) {
+            if (invalidations.get() == stamp) {
+                entries.put(key, loaded);
+            }
+        }
+        return loaded;
+    }
+    
+    /**
+     * Drop the entries for every prefix of word, the only ones a change to word can affect
+     */
+    public void invalidate(String word) {
+        if (word == null || word.isEmpty()) return;
+        String lowerWord = word.toLowerCase();
+        synchronized (this) {
+            invalidations.incrementAndGet();
+            for (int length = 1; length <= lowerWord.length(); length++) {
+                entries.remove(lowerWord.substring(0, length));
+            }
+        }
+    }
+    
+    public synchronized void clear() {
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+    
+    public long hits() {
+        return hits.get();
+    }
+    
+    public long misses() {
+        return misses.get();
+    }
+    
+    public long evictions() {
+        return evictions.get();
+    }
+    
+    public double hitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%d/%d entries, %d hits, %d misses (%.1f%% hit rate), %d evictions",
+                             size(), capacity, hits(), misses(), hitRate() * 100, evictions());
+    }
+}
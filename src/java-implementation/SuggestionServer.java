@@ -0,0 +1,366 @@
+package autocomplete;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP/JSON front end for an AutocompleteSystem, built on the JDK's
+ * com.sun.net.httpserver.
+ * 
+ * Endpoints (parameters in the query string or a form-encoded POST body):
+ *   GET  /suggest?prefix=ap           top suggestions for a prefix
+ *   POST /select?word=apple           record a selection
+ *   POST /add?word=apricot&frequency=5 add a word
+ *   GET  /stats                       engine metrics plus p50/p99/max latency per endpoint
+ * 
+ * Each request runs on its own virtual thread when the JDK has them (21+) and on a cached
+ * pool otherwise. Responses carry a Content-Length, so HTTP/1.1 connections stay open and
+ * pipelined requests are answered in order. JSON is encoded straight into one byte buffer
+ * that is written to the socket as is. Requests are served concurrently, so give the server
+ * a thread-safe system (AutocompleteSystem.concurrent, snapshotting or durable).
+ * 
+ * The JDK server writes headers and body separately, so with Nagle's algorithm on a
+ * kept-alive connection waits out the client's delayed ACK (~40 ms) on every response.
+ * Start the JVM with -Dsun.net.httpserver.nodelay=true (Main --serve sets it) to avoid that.
+ */
+public class SuggestionServer implements AutoCloseable {
+    private static final String[] ENDPOINTS = {"/suggest", "/select", "/add", "/stats"};
+    
+    private final AutocompleteSystem system;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    
+    public SuggestionServer(AutocompleteSystem system, InetSocketAddress address) throws IOException {
+        this.system = Objects.requireNonNull(system, "system");
+        for (String endpoint : ENDPOINTS) {
+            latencies.put(endpoint, new LatencyHistogram());
+        }
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+    }
+    
+    /**
+     * Virtual-thread-per-request on JDK 21+, otherwise a cached pool of daemon threads
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "suggestion-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    /**
+     * The bound port (useful when the server was created on port 0)
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Latency histogram of an endpoint such as "/suggest", or null for an unknown one
+     */
+    public LatencyHistogram getLatency(String endpoint) {
+        return latencies.get(endpoint);
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String path = exchange.getRequestURI().getPath();
+        JsonBuffer json = new JsonBuffer();
+        int status;
+        try {
+            Map<String, String> params = parameters(exchange);
+            status = dispatch(path, exchange.getRequestMethod(), params, json);
+        } catch (IllegalArgumentException e) {
+            json.reset();
+            json.beginObject().field("error").string(e.getMessage()).endObject();
+            status = 400;
+        } catch (RuntimeException e) {
+            json.reset();
+            json.beginObject().field("error").string(String.valueOf(e)).endObject();
+            status = 500;
+        }
+        
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, json.size());
+        try (OutputStream body = exchange.getResponseBody()) {
+            json.writeTo(body);
+        }
+        
+        LatencyHistogram histogram = latencies.get(path);
+        if (histogram != null) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+    
+    private int dispatch(String path, String method, Map<String, String> params, JsonBuffer json) {
+        switch (path) {
+            case "/suggest": {
+                if (!method.equals("GET")) return methodNotAllowed(json, "GET");
+                String prefix = required(params, "prefix");
+                json.beginObject().field("prefix").string(prefix).field("suggestions").beginArray();
+                for (WordFrequency suggestion : system.getSuggestions(prefix)) {
+                    json.beginObject()
+                        .field("word").string(suggestion.word)
+                        .field("frequency").number(suggestion.frequency)
+                        .endObject();
+                }
+                json.endArray().endObject();
+                return 200;
+            }
+            case "/select": {
+                if (!method.equals("POST")) return methodNotAllowed(json, "POST");
+                String word = required(params, "word").toLowerCase();
+                system.selectSuggestion(word);
+                json.beginObject().field("selected").string(word).endObject();
+                return 200;
+            }
+            case "/add": {
+                if (!method.equals("POST")) return methodNotAllowed(json, "POST");
+                String word = required(params, "word").toLowerCase();
+                int frequency = params.containsKey("frequency") ? parseInt(params.get("frequency"), "frequency") : 1;
+                system.addWord(word, frequency);
+                json.beginObject().field("added").string(word).field("frequency").number(frequency).endObject();
+                return 200;
+            }
+            case "/stats": {
+                if (!method.equals("GET")) return methodNotAllowed(json, "GET");
+                writeStats(json);
+                return 200;
+            }
+            default:
+                json.beginObject().field("error").string("Unknown endpoint: " + path).endObject();
+                return 404;
+        }
+    }
+    
+    private void writeStats(JsonBuffer json) {
+        json.beginObject().field("words").number(system.getWordCount());
+        SuggestionCache cache = system.getSuggestionCache();
+        if (cache != null) {
+            json.field("cache").beginObject()
+                .field("size").number(cache.size())
+                .field("hits").number(cache.hits())
+                .field("misses").number(cache.misses())
+                .endObject();
+        }
+        MetricsSnapshot metrics = system.getMetrics();
+        json.field("engine").beginObject()
+            .field("searches").number(metrics.getSearches())
+            .field("maxNodesVisited").number(metrics.getMaxNodesVisited())
+            .field("maxCandidates").number(metrics.getMaxCandidates())
+            .field("nodeCount").number(metrics.getNodeCount())
+            .field("estimatedHeapBytes").number(metrics.getEstimatedHeapBytes())
+            .endObject();
+        json.field("latency").beginObject();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            json.field(entry.getKey()).beginObject()
+                .field("count").number(histogram.getCount())
+                .field("p50Micros").number(histogram.getValueAtPercentile(50) / 1000)
+                .field("p99Micros").number(histogram.getValueAtPercentile(99) / 1000)
+                .field("maxMicros").number(histogram.getMaxNanos() / 1000)
+                .endObject();
+        }
+        json.endObject().endObject();
+    }
+    
+    private static int methodNotAllowed(JsonBuffer json, String allowed) {
+        json.beginObject().field("error").string("Use " + allowed).endObject();
+        return 405;
+    }
+    
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value.trim();
+    }
+    
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not an integer " + name + ": " + value);
+        }
+    }
+    
+    /**
+     * Query string parameters merged with a form-encoded body. The body is always read to
+     * the end so the connection can be reused for the next request.
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readAllBytes();
+            if (bytes.length > 0) {
+                parseForm(new String(bytes, StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+    
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                       URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+    
+    /**
+     * Stop accepting connections, give in-flight requests up to a second, then stop
+     * the request threads
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Minimal JSON encoder writing UTF-8 into a growable byte array. Commas are inserted
+     * automatically: a value directly after another value or a closed container gets one.
+     */
+    private static final class JsonBuffer {
+        private byte[] bytes = new byte[256];
+        private int size;
+        private boolean needsComma;
+        
+        JsonBuffer beginObject() {
+            separate();
+            append((byte) '{');
+            needsComma = false;
+            return this;
+        }
+        
+        JsonBuffer endObject() {
+            append((byte) '}');
+            needsComma = true;
+            return this;
+        }
+        
+        JsonBuffer beginArray() {
+            separate();
+            append((byte) '[');
+            needsComma = false;
+            return this;
+        }
+        
+        JsonBuffer endArray() {
+            append((byte) ']');
+            needsComma = true;
+            return this;
+        }
+        
+        JsonBuffer field(String name) {
+            string(name);
+            append((byte) ':');
+            needsComma = false;
+            return this;
+        }
+        
+        JsonBuffer number(long value) {
+            separate();
+            ascii(Long.toString(value));
+            needsComma = true;
+            return this;
+        }
+        
+        JsonBuffer string(String value) {
+            separate();
+            append((byte) '"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    append((byte) '\\');
+                    append((byte) c);
+                } else if (c < 0x20) {
+                    ascii(String.format("\\u%04x", (int) c));
+                } else if (c < 0x80) {
+                    append((byte) c);
+                } else if (c < 0x800) {
+                    append((byte) (0xC0 | (c >> 6)));
+                    append((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                           && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    append((byte) (0xF0 | (codePoint >> 18)));
+                    append((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    append((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    append((byte) (0xE0 | (c >> 12)));
+                    append((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    append((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+            append((byte) '"');
+            needsComma = true;
+            return this;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        void reset() {
+            size = 0;
+            needsComma = false;
+        }
+        
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+        
+        private void separate() {
+            if (needsComma) append((byte) ',');
+        }
+        
+        private void ascii(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                append((byte) text.charAt(i));
+            }
+        }
+        
+        private void append(byte b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = b;
+        }
+    }
+}
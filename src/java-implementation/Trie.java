@@ -1,114 +1,1217 @@
 package autocomplete;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Trie data structure for efficient prefix-based word storage and retrieval
  */
-public class Trie {
+public class Trie implements PrefixIndex, InstrumentedIndex {
+    public static final int DEFAULT_SUGGESTION_LIMIT = 5;
+    // Smallest run of prefixes under one child that a parallel searchAll hands to its own task
+    private static final int BATCH_FORK_THRESHOLD = 32;
+    
+    /**
+     * How search finds the top K words under a prefix node
+     */
+    public enum SearchMode {
+        // Every node stores its subtree's top K list: fastest search, K entries of memory per node
+        TOP_K_LISTS,
+        // Every node stores only its subtree's max frequency; search expands nodes best-first
+        BEST_FIRST
+    }
+    
+    /**
+     * How each node stores its children
+     */
+    public enum NodeLayout {
+        // HashMap<Character, TrieNode> per node (HashMapTrieNode)
+        HASH_MAP,
+        // Sorted char[] labels with a parallel child array (ArrayTrieNode)
+        SORTED_ARRAY
+    }
+    
     private TrieNode root;
+    private final int suggestionLimit;
+    private final SearchMode searchMode;
+    private final NodeLayout nodeLayout;
+    private int nodeCount;
+    private int wordCount;
+    // Nodes that lost children since they were last compacted (see compact)
+    private final Set<TrieNode> compactionQueue = Collections.newSetFromMap(new LinkedHashMap<>());
+    // Bumped by every write so open Sessions know their cached nodes and results may be stale
+    private int modCount;
+    private final SearchStatistics searchStatistics = EngineMetrics.ENABLED ? new SearchStatistics() : null;
     
     public Trie() {
-        this.root = new TrieNode();
+        this(DEFAULT_SUGGESTION_LIMIT);
+    }
+    
+    /**
+     * Create a Trie that returns at most suggestionLimit words per search
+     */
+    public Trie(int suggestionLimit) {
+        this(suggestionLimit, SearchMode.TOP_K_LISTS);
+    }
+    
+    public Trie(int suggestionLimit, SearchMode searchMode) {
+        this(suggestionLimit, searchMode, NodeLayout.HASH_MAP);
+    }
+    
+    public Trie(int suggestionLimit, SearchMode searchMode, NodeLayout nodeLayout) {
+        if (suggestionLimit < 1) {
+            throw new IllegalArgumentException("suggestionLimit must be positive: " + suggestionLimit);
+        }
+        this.suggestionLimit = suggestionLimit;
+        this.searchMode = Objects.requireNonNull(searchMode, "searchMode");
+        this.nodeLayout = Objects.requireNonNull(nodeLayout, "nodeLayout");
+        this.root = newNode();
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+    
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+    
+    public NodeLayout getNodeLayout() {
+        return nodeLayout;
+    }
+    
+    /**
+     * Number of distinct words in the Trie
+     */
+    @Override
+    public int wordCount() {
+        return wordCount;
+    }
+    
+    /**
+     * Number of nodes in the Trie, including the root
+     */
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+    
+    @Override
+    public SearchStatistics searchStatistics() {
+        return searchStatistics;
+    }
+    
+    @Override
+    public long estimatedHeapBytes() {
+        long bytes = 0;
+        Deque<TrieNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            TrieNode node = stack.pop();
+            bytes += node.estimatedBytes();
+            for (TrieNode child : node.children()) {
+                stack.push(child);
+            }
+        }
+        return bytes;
+    }
+    
+    private TrieNode newNode() {
+        nodeCount++;
+        boolean keepTopWords = searchMode == SearchMode.TOP_K_LISTS;
+        return nodeLayout == NodeLayout.SORTED_ARRAY
+                ? new ArrayTrieNode(keepTopWords)
+                : new HashMapTrieNode(keepTopWords);
     }
     
     /**
      * Insert a word with its frequency into the Trie
-     * Time Complexity: O(m) where m is the length of the word
+     * Time Complexity: O(m * K) where m is the length of the word, K the suggestion limit
      */
+    @Override
     public void insert(String word, int frequency) {
         if (word == null || word.isEmpty()) return;
         
-        TrieNode current = root;
         String lowerWord = word.toLowerCase();
+        TrieNode[] path = new TrieNode[lowerWord.length() + 1];
+        TrieNode current = root;
+        path[0] = current;
+        modCount++;
         
-        for (char ch : lowerWord.toCharArray()) {
-            current.children.putIfAbsent(ch, new TrieNode());
-            current = current.children.get(ch);
+        for (int i = 0; i < lowerWord.length(); i++) {
+            char ch = lowerWord.charAt(i);
+            TrieNode next = current.child(ch);
+            current = next != null ? next : current.addChild(ch, newNode());
+            path[i + 1] = current;
         }
         
+        // A word that is new to the Trie ranks nowhere yet, so any frequency is a rise
+        int oldFrequency = current.isEndOfWord ? current.frequency : Integer.MIN_VALUE;
+        if (!current.isEndOfWord) wordCount++;
         current.isEndOfWord = true;
         current.frequency = Math.max(current.frequency, frequency);
         current.word = lowerWord;
+        refreshRanking(path, lowerWord, oldFrequency, current.frequency);
     }
     
     /**
      * Update frequency of an existing word or insert if not exists
      */
+    @Override
     public void updateFrequency(String word, int increment) {
         if (word == null || word.isEmpty()) return;
         
-        TrieNode current = root;
         String lowerWord = word.toLowerCase();
+        TrieNode[] path = new TrieNode[lowerWord.length() + 1];
+        TrieNode current = root;
+        path[0] = current;
         
-        for (char ch : lowerWord.toCharArray()) {
-            if (!current.children.containsKey(ch)) {
+        for (int i = 0; i < lowerWord.length(); i++) {
+            char ch = lowerWord.charAt(i);
+            TrieNode next = current.child(ch);
+            if (next == null) {
                 // Word doesn't exist, insert it
                 insert(word, increment);
                 return;
             }
-            current = current.children.get(ch);
+            current = next;
+            path[i + 1] = current;
         }
         
+        modCount++;
+        int oldFrequency;
         if (current.isEndOfWord) {
+            oldFrequency = current.frequency;
             current.frequency += increment;
         } else {
+            oldFrequency = Integer.MIN_VALUE;
+            wordCount++;
             current.isEndOfWord = true;
             current.frequency = increment;
             current.word = lowerWord;
         }
+        refreshRanking(path, lowerWord, oldFrequency, current.frequency);
+    }
+    
+    /**
+     * Remove a word. Its node stops being a word; it and every ancestor left with no word
+     * and no children are pruned bottom-up, and the top K lists or max frequencies along
+     * the path are repaired. Returns false if the word was not in the Trie.
+     */
+    public boolean delete(String word) {
+        if (word == null || word.isEmpty()) return false;
+        
+        String lowerWord = word.toLowerCase();
+        TrieNode[] path = pathTo(lowerWord);
+        if (path == null) return false;
+        TrieNode node = path[path.length - 1];
+        if (!node.isEndOfWord) return false;
+        
+        modCount++;
+        wordCount--;
+        int oldFrequency = node.frequency;
+        node.isEndOfWord = false;
+        node.frequency = 0;
+        node.word = "";
+        int kept = prune(path, lowerWord);
+        refreshRanking(Arrays.copyOf(path, kept), lowerWord, oldFrequency, Integer.MIN_VALUE);
+        return true;
+    }
+    
+    /**
+     * Remove every word starting with prefix by detaching its subtree, pruning emptied
+     * ancestors and repairing the ranking data above it. Returns the number of words
+     * removed; an empty prefix removes nothing.
+     */
+    public int deleteByPrefix(String prefix) {
+        if (prefix == null || prefix.isEmpty()) return 0;
+        
+        String lowerPrefix = prefix.toLowerCase();
+        TrieNode[] path = pathTo(lowerPrefix);
+        if (path == null) return 0;
+        TrieNode subtree = path[path.length - 1];
+        List<WordFrequency> removed = new ArrayList<>();
+        collectWords(subtree, removed);
+        if (removed.isEmpty()) return 0;
+        
+        modCount++;
+        wordCount -= removed.size();
+        releaseNodes(subtree);
+        TrieNode parent = path[path.length - 2];
+        parent.removeChild(lowerPrefix.charAt(lowerPrefix.length() - 1));
+        compactionQueue.add(parent);
+        int kept = prune(Arrays.copyOf(path, path.length - 1), lowerPrefix);
+        
+        // Repair bottom-up; like for one word, a node whose ranking data cannot have
+        // involved the removed words ends the repair
+        for (int i = kept - 1; i >= 0; i--) {
+            TrieNode node = path[i];
+            if (searchMode == SearchMode.BEST_FIRST) {
+                int max = node.isEndOfWord ? node.frequency : Integer.MIN_VALUE;
+                for (TrieNode child : node.children()) {
+                    max = Math.max(max, child.maxFrequency);
+                }
+                if (max == node.maxFrequency) break;
+                node.maxFrequency = max;
+            } else {
+                boolean listed = false;
+                for (WordFrequency entry : node.topWords) {
+                    listed |= entry.word.startsWith(lowerPrefix);
+                }
+                if (!listed) break;
+                rebuildTopWords(node);
+            }
+        }
+        return removed.size();
+    }
+    
+    /**
+     * Nodes along the path of key, root first, or null if the path does not exist
+     */
+    private TrieNode[] pathTo(String key) {
+        TrieNode[] path = new TrieNode[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].child(key.charAt(i));
+            if (path[i + 1] == null) return null;
+        }
+        return path;
+    }
+    
+    /**
+     * Detach the nodes at the end of path (labelled by key) that hold no word and no
+     * children, deepest first, and return how many path nodes remain
+     */
+    private int prune(TrieNode[] path, String key) {
+        int last = path.length - 1;
+        while (last > 0 && !path[last].isEndOfWord && path[last].childCount() == 0) {
+            path[last - 1].removeChild(key.charAt(last - 1));
+            compactionQueue.remove(path[last]);
+            compactionQueue.add(path[last - 1]);
+            nodeCount--;
+            last--;
+        }
+        return last + 1;
+    }
+    
+    /**
+     * Compact up to maxNodes of the nodes that lost children to deletes, shrinking child
+     * maps that removals left oversized (see TrieNode.compact). Work is bounded per call,
+     * so a large delete can be followed by many small passes between queries instead of
+     * one pause. Returns the number of nodes whose memory was released.
+     */
+    public int compact(int maxNodes) {
+        int compacted = 0;
+        Iterator<TrieNode> pending = compactionQueue.iterator();
+        for (int i = 0; i < maxNodes && pending.hasNext(); i++) {
+            TrieNode node = pending.next();
+            pending.remove();
+            if (node.compact()) {
+                compacted++;
+            }
+        }
+        return compacted;
+    }
+    
+    /**
+     * Nodes waiting for compact()
+     */
+    public int pendingCompactions() {
+        return compactionQueue.size();
     }
     
     /**
-     * Search for all words with given prefix and return top 5 by frequency
-     * Time Complexity: O(k + n log n) where k = prefix length, n = matching words
+     * Search for words with given prefix and return the top K by frequency
+     * Time Complexity: O(k + K) with TOP_K_LISTS, O(k + K * b log(K * b)) with BEST_FIRST,
+     * where k = prefix length, K = suggestion limit, b = branching factor
      */
+    @Override
     public List<WordFrequency> search(String prefix) {
-        List<WordFrequency> results = new ArrayList<>();
-        if (prefix == null || prefix.isEmpty()) return results;
+        if (prefix == null || prefix.isEmpty()) return new ArrayList<>();
         
         TrieNode current = root;
         String lowerPrefix = prefix.toLowerCase();
         
         // Navigate to the prefix node
-        for (char ch : lowerPrefix.toCharArray()) {
-            if (!current.children.containsKey(ch)) {
-                return results; // Prefix not found
+        for (int i = 0; i < lowerPrefix.length(); i++) {
+            current = current.child(lowerPrefix.charAt(i));
+            if (current == null) {
+                if (EngineMetrics.ENABLED) searchStatistics.record(i + 1, 0);
+                return new ArrayList<>(); // Prefix not found
+            }
+        }
+        
+        if (searchMode == SearchMode.BEST_FIRST) {
+            return bestFirstSearch(current, lowerPrefix, searchStatistics);
+        }
+        
+        // Every node already holds the ranked top K of its subtree
+        if (EngineMetrics.ENABLED) searchStatistics.record(lowerPrefix.length(), current.topWords.size());
+        return new ArrayList<>(current.topWords);
+    }
+    
+    /**
+     * search() without allocating: the top ranked words starting with prefix are written
+     * into sink, replacing its contents, at most min(suggestion limit, sink capacity) of
+     * them. Each character is lower-cased as the walk reaches it, child lookups do not box
+     * and best-first search runs in the sink's reusable queue. A prefix that per-character
+     * lower-casing would fold differently from search(String) (see foldsPerChar) takes the
+     * allocating path, so both always return the same words.
+     */
+    @Override
+    public void search(CharSequence prefix, ResultSink sink) {
+        if (prefix != null && !foldsPerChar(prefix)) {
+            PrefixIndex.super.search(prefix, sink);
+            return;
+        }
+        sink.clear();
+        if (prefix == null || prefix.length() == 0) return;
+        
+        TrieNode current = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            current = current.child(Character.toLowerCase(prefix.charAt(i)));
+            if (current == null) {
+                if (EngineMetrics.ENABLED) searchStatistics.record(i + 1, 0);
+                return;
+            }
+        }
+        
+        int limit = Math.min(suggestionLimit, sink.capacity());
+        if (searchMode == SearchMode.BEST_FIRST) {
+            bestFirstSearch(current, prefix.length(), limit, sink);
+            return;
+        }
+        
+        // Indexed loop: iterating the list would allocate an iterator
+        List<WordFrequency> top = current.topWords;
+        for (int i = 0; i < Math.min(limit, top.size()); i++) {
+            WordFrequency entry = top.get(i);
+            sink.add(entry.word, entry.frequency);
+        }
+        if (EngineMetrics.ENABLED) searchStatistics.record(prefix.length(), top.size());
+    }
+    
+    /**
+     * Whether Character.toLowerCase on each char of text gives what String.toLowerCase
+     * gives for the whole text. It does except in locales with their own casing rules
+     * (Turkish, Azeri, Lithuanian), for the dotted capital I (one char that lower-cases
+     * to two), for capital sigma (final or not depends on what follows) and for
+     * supplementary characters, which per-char folding sees as lone surrogates.
+     */
+    static boolean foldsPerChar(CharSequence text) {
+        if (!localeFoldsPerChar()) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (!foldsAlone(text.charAt(i))) return false;
+        }
+        return true;
+    }
+    
+    private static boolean foldsAlone(char ch) {
+        return ch != '\u0130' && ch != '\u03a3' && !Character.isSurrogate(ch);
+    }
+    
+    private static boolean localeFoldsPerChar() {
+        // String.toLowerCase() uses the default locale, which can change at run time
+        String language = Locale.getDefault().getLanguage();
+        return !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+    }
+    
+    /**
+     * Typo-tolerant prefix search: words that start with something within maxEdits
+     * insertions, deletions or substitutions of prefix. Results are ranked by that edit
+     * distance first, then by frequency and lexicographically, so exact prefix matches
+     * always come first.
+     * 
+     * The walk carries one row of a Levenshtein automaton per trie node (the edit distances
+     * between the node's path and every prefix of the query) and abandons a branch as soon
+     * as every entry in its row exceeds maxEdits, so only the narrow band of the trie near
+     * the query is visited. Each node within maxEdits of the whole query contributes its
+     * subtree's top K, which are merged at the end.
+     */
+    public List<WordFrequency> fuzzySearch(String prefix, int maxEdits) {
+        if (prefix == null || prefix.isEmpty()) return new ArrayList<>();
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("maxEdits must not be negative: " + maxEdits);
+        }
+        
+        String query = prefix.toLowerCase();
+        int[] firstRow = new int[query.length() + 1];
+        for (int j = 0; j <= query.length(); j++) {
+            firstRow[j] = j;
+        }
+        
+        Map<String, FuzzyMatch> matches = new HashMap<>();
+        fuzzyWalk(root, new StringBuilder(), firstRow, query, maxEdits, matches);
+        
+        List<FuzzyMatch> ranked = new ArrayList<>(matches.values());
+        ranked.sort((a, b) -> {
+            if (a.distance != b.distance) {
+                return Integer.compare(a.distance, b.distance);
             }
-            current = current.children.get(ch);
+            return WordFrequency.RANKING.compare(a.entry, b.entry);
+        });
+        
+        List<WordFrequency> results = new ArrayList<>();
+        for (int i = 0; i < Math.min(suggestionLimit, ranked.size()); i++) {
+            results.add(ranked.get(i).entry);
+        }
+        return results;
+    }
+    
+    private void fuzzyWalk(TrieNode node, StringBuilder path, int[] row, String query, int maxEdits,
+                           Map<String, FuzzyMatch> matches) {
+        int distance = row[query.length()];
+        int rowMin = Integer.MAX_VALUE;
+        for (int value : row) {
+            rowMin = Math.min(rowMin, value);
         }
         
-        // Collect all words with this prefix
-        collectWords(current, results);
+        if (distance <= maxEdits && path.length() > 0) {
+            // Any K words better than one of this subtree's others are in its top K
+            List<WordFrequency> top = searchMode == SearchMode.BEST_FIRST
+                    ? bestFirstSearch(node, path.toString(), null)
+                    : node.topWords;
+            for (WordFrequency entry : top) {
+                FuzzyMatch previous = matches.get(entry.word);
+                if (previous == null || previous.distance > distance) {
+                    matches.put(entry.word, new FuzzyMatch(entry, distance));
+                }
+            }
+            // Rows only grow deeper down, so no descendant can get closer than rowMin
+            if (distance == rowMin) return;
+        }
+        if (rowMin > maxEdits) return;
         
-        // Sort by frequency (descending) and then lexicographically
-        results.sort((a, b) -> {
-            if (b.frequency != a.frequency) {
-                return Integer.compare(b.frequency, a.frequency);
+        node.forEachChild((label, child) -> {
+            int[] next = new int[row.length];
+            next[0] = row[0] + 1;
+            for (int j = 1; j < row.length; j++) {
+                int substitution = row[j - 1] + (query.charAt(j - 1) == label ? 0 : 1);
+                next[j] = Math.min(substitution, Math.min(row[j] + 1, next[j - 1] + 1));
             }
-            return a.word.compareTo(b.word);
+            path.append(label);
+            fuzzyWalk(child, path, next, query, maxEdits, matches);
+            path.setLength(path.length() - 1);
         });
+    }
+    
+    private static final class FuzzyMatch {
+        final WordFrequency entry;
+        final int distance;
         
-        // Return top 5 results
-        return results.size() > 5 ? results.subList(0, 5) : results;
+        FuzzyMatch(WordFrequency entry, int distance) {
+            this.entry = entry;
+            this.distance = distance;
+        }
     }
     
     /**
-     * Helper method to collect all words from a node using DFS
+     * Start a search-as-you-type session: a cursor that follows the typed prefix one
+     * keystroke at a time instead of searching the whole prefix on every call
      */
-    private void collectWords(TrieNode node, List<WordFrequency> results) {
+    public Session newSession() {
+        return new Session();
+    }
+    
+    /**
+     * Keystroke cursor over this Trie. It keeps the node reached by every prefix of what
+     * has been typed and the suggestions already produced for it, so type() advances one
+     * edge, backspace() pops back to the previous node and its cached suggestions, and
+     * suggestions() costs O(K) for a new prefix with TOP_K_LISTS. With BEST_FIRST a new
+     * prefix reuses the previous prefix's suggestions when they are already complete (all
+     * of them still match, or there were fewer than K) and only searches otherwise.
+     * 
+     * Characters are lowercased one at a time. When what was typed would fold differently
+     * as a whole string (see foldsPerChar), prefix() and suggestions() fall back to
+     * lower-casing and searching the whole typed text, so they always match search. A write
+     * to the Trie invalidates the cached suggestions; the next call re-walks the typed
+     * prefix once. Like the Trie, a session is not thread-safe.
+     */
+    public final class Session {
+        // What was typed, as typed, and the same lowercased one char at a time
+        private final StringBuilder typed = new StringBuilder();
+        private final StringBuilder prefix = new StringBuilder();
+        // Typed chars that per-char folding gets wrong (see foldsAlone)
+        private int unfoldable;
+        // nodes[i] is the node for the first i typed characters, for i <= matched
+        private TrieNode[] nodes = new TrieNode[16];
+        private int matched;
+        // Suggestions per prefix length, null until asked for
+        private final List<List<WordFrequency>> results = new ArrayList<>();
+        private int seenModCount;
+        
+        private Session() {
+            nodes[0] = root;
+            results.add(null);
+            seenModCount = modCount;
+        }
+        
+        /**
+         * Append one character to the prefix
+         */
+        public void type(char ch) {
+            resyncIfModified();
+            typed.append(ch);
+            if (!foldsAlone(ch)) unfoldable++;
+            char lower = Character.toLowerCase(ch);
+            prefix.append(lower);
+            if (matched == prefix.length() - 1) {
+                TrieNode next = nodes[matched].child(lower);
+                if (next != null) {
+                    if (matched + 1 == nodes.length) {
+                        nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    }
+                    nodes[++matched] = next;
+                }
+            }
+            results.add(null);
+        }
+        
+        /**
+         * Append every character of text to the prefix
+         */
+        public void type(CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                type(text.charAt(i));
+            }
+        }
+        
+        /**
+         * Remove the last typed character; false if nothing was typed
+         */
+        public boolean backspace() {
+            if (prefix.length() == 0) return false;
+            if (!foldsAlone(typed.charAt(typed.length() - 1))) unfoldable--;
+            typed.setLength(typed.length() - 1);
+            prefix.setLength(prefix.length() - 1);
+            matched = Math.min(matched, prefix.length());
+            results.remove(results.size() - 1);
+            return true;
+        }
+        
+        /**
+         * Forget everything typed so far
+         */
+        public void clear() {
+            typed.setLength(0);
+            unfoldable = 0;
+            prefix.setLength(0);
+            matched = 0;
+            results.subList(1, results.size()).clear();
+        }
+        
+        /**
+         * The prefix typed so far, lowercased like search lowercases it
+         */
+        public String prefix() {
+            return foldsPerChar() ? prefix.toString() : typed.toString().toLowerCase();
+        }
+        
+        private boolean foldsPerChar() {
+            return unfoldable == 0 && localeFoldsPerChar();
+        }
+        
+        /**
+         * Top K words for the current prefix, exactly what search(prefix()) returns
+         */
+        public List<WordFrequency> suggestions() {
+            if (!foldsPerChar()) return search(typed.toString());
+            resyncIfModified();
+            int depth = prefix.length();
+            if (depth == 0) return new ArrayList<>();
+            if (matched < depth) {
+                if (EngineMetrics.ENABLED) searchStatistics.record(1, 0);
+                return new ArrayList<>(); // Prefix not found
+            }
+            
+            List<WordFrequency> cached = results.get(depth);
+            if (cached == null) {
+                cached = topWordsAt(nodes[depth], prefix.toString(), results.get(depth - 1));
+                results.set(depth, cached);
+            }
+            return new ArrayList<>(cached);
+        }
+        
+        /**
+         * After a write, nodes may have appeared along the prefix and every cached list
+         * may be stale: walk the prefix again and drop the cache
+         */
+        private void resyncIfModified() {
+            if (seenModCount == modCount) return;
+            seenModCount = modCount;
+            if (nodes.length <= prefix.length()) {
+                nodes = Arrays.copyOf(nodes, prefix.length() + 1);
+            }
+            nodes[0] = root;
+            matched = 0;
+            while (matched < prefix.length()) {
+                TrieNode next = nodes[matched].child(prefix.charAt(matched));
+                if (next == null) break;
+                nodes[++matched] = next;
+            }
+            Collections.fill(results, null);
+        }
+    }
+    
+    /**
+     * search() for many prefixes at once, keyed by the prefixes as given (in their order)
+     */
+    public Map<String, List<WordFrequency>> searchAll(Collection<String> prefixes) {
+        return searchAll(prefixes, null);
+    }
+    
+    /**
+     * search() for many prefixes at once, keyed by the prefixes as given (in their order).
+     * Each result equals search(prefix).
+     * 
+     * The distinct lowercased prefixes are sorted, so prefixes sharing a path form runs:
+     * the walk follows each shared edge once for the whole run, answers a prefix when it
+     * reaches its node and passes that answer down as the ancestor list for the longer
+     * prefixes below it (see topWordsAt). With a pool, runs of at least
+     * BATCH_FORK_THRESHOLD prefixes under different children are walked as separate
+     * fork/join tasks; the Trie must not be written while they run.
+     */
+    public Map<String, List<WordFrequency>> searchAll(Collection<String> prefixes, ForkJoinPool pool) {
+        TreeSet<String> distinct = new TreeSet<>();
+        for (String prefix : prefixes) {
+            if (prefix != null && !prefix.isEmpty()) {
+                distinct.add(prefix.toLowerCase());
+            }
+        }
+        String[] keys = distinct.toArray(new String[0]);
+        List<List<WordFrequency>> answers = new ArrayList<>(Collections.nCopies(keys.length, null));
+        if (keys.length > 0) {
+            BatchWalk walk = new BatchWalk(keys, answers, pool != null, 0, keys.length, root, 0, null);
+            if (pool != null) {
+                pool.invoke(walk);
+            } else {
+                walk.compute();
+            }
+        }
+        
+        Map<String, List<WordFrequency>> results = new LinkedHashMap<>();
+        for (String prefix : prefixes) {
+            List<WordFrequency> answer = null;
+            if (prefix != null && !prefix.isEmpty()) {
+                answer = answers.get(Arrays.binarySearch(keys, prefix.toLowerCase()));
+            }
+            results.put(prefix, answer == null ? new ArrayList<>() : new ArrayList<>(answer));
+        }
+        return results;
+    }
+    
+    /**
+     * Walks keys[from, to), which all extend the depth characters leading to node. Each
+     * task writes only its own slots of answers; join() publishes them to the caller.
+     */
+    private final class BatchWalk extends RecursiveAction {
+        // Never serialized; RecursiveAction is Serializable
+        private static final long serialVersionUID = 1L;
+        
+        private final String[] keys;
+        private final List<List<WordFrequency>> answers;
+        private final boolean fork;
+        private final int from;
+        private final int to;
+        private final TrieNode node;
+        private final int depth;
+        private final List<WordFrequency> ancestorTop;
+        
+        BatchWalk(String[] keys, List<List<WordFrequency>> answers, boolean fork, int from, int to,
+                  TrieNode node, int depth, List<WordFrequency> ancestorTop) {
+            this.keys = keys;
+            this.answers = answers;
+            this.fork = fork;
+            this.from = from;
+            this.to = to;
+            this.node = node;
+            this.depth = depth;
+            this.ancestorTop = ancestorTop;
+        }
+        
+        @Override
+        protected void compute() {
+            int i = from;
+            List<WordFrequency> inherited = ancestorTop;
+            // Keys are distinct and sorted, so only the first can end at this node
+            if (keys[i].length() == depth) {
+                inherited = topWordsAt(node, keys[i], ancestorTop);
+                answers.set(i, inherited);
+                i++;
+            }
+            
+            List<BatchWalk> forked = new ArrayList<>();
+            while (i < to) {
+                char label = keys[i].charAt(depth);
+                int end = i + 1;
+                while (end < to && keys[end].charAt(depth) == label) {
+                    end++;
+                }
+                TrieNode child = node.child(label);
+                if (child == null) {
+                    if (EngineMetrics.ENABLED) searchStatistics.record(1, 0);
+                } else {
+                    BatchWalk walk = new BatchWalk(keys, answers, fork, i, end, child, depth + 1, inherited);
+                    if (fork && end - i >= BATCH_FORK_THRESHOLD) {
+                        walk.fork();
+                        forked.add(walk);
+                    } else {
+                        walk.compute();
+                    }
+                }
+                i = end;
+            }
+            for (BatchWalk walk : forked) {
+                walk.join();
+            }
+        }
+    }
+    
+    /**
+     * Top K under node, whose path is prefix. ancestorTop, when not null, is the top K of
+     * a shorter prefix of it: the node's words are a subset of the ancestor's in the same
+     * order, so the ancestor's list filtered to prefix is the answer whenever it was
+     * complete for that subset (every entry kept, or the ancestor held fewer than K words).
+     * With BEST_FIRST that saves the search; with TOP_K_LISTS the node's list is at hand.
+     */
+    private List<WordFrequency> topWordsAt(TrieNode node, String prefix, List<WordFrequency> ancestorTop) {
+        if (searchMode == SearchMode.TOP_K_LISTS) {
+            if (EngineMetrics.ENABLED) searchStatistics.record(1, node.topWords.size());
+            return new ArrayList<>(node.topWords);
+        }
+        
+        if (ancestorTop != null) {
+            List<WordFrequency> refined = new ArrayList<>();
+            for (WordFrequency entry : ancestorTop) {
+                if (entry.word.startsWith(prefix)) {
+                    refined.add(entry);
+                }
+            }
+            if (refined.size() == ancestorTop.size() || ancestorTop.size() < suggestionLimit) {
+                if (EngineMetrics.ENABLED) searchStatistics.record(1, refined.size());
+                return refined;
+            }
+        }
+        return bestFirstSearch(node, prefix, searchStatistics);
+    }
+    
+    /**
+     * Expand nodes in order of their subtree max frequency and stop as soon as K words
+     * have come off the queue; every node still queued is bounded by a word already taken.
+     * The work done is recorded in stats unless it is null.
+     */
+    private List<WordFrequency> bestFirstSearch(TrieNode start, String prefix, SearchStatistics stats) {
+        List<WordFrequency> results = new ArrayList<>();
+        PriorityQueue<Candidate<TrieNode>> queue = new PriorityQueue<>(Candidate.ORDER);
+        queue.add(new Candidate<>(start, prefix, start.maxFrequency));
+        int expanded = 0;
+        
+        while (!queue.isEmpty() && results.size() < suggestionLimit) {
+            Candidate<TrieNode> candidate = queue.poll();
+            if (candidate.node == null) {
+                results.add(new WordFrequency(candidate.key, candidate.rank));
+                continue;
+            }
+            
+            expanded++;
+            TrieNode node = candidate.node;
+            if (node.isEndOfWord) {
+                queue.add(new Candidate<>(null, node.word, node.frequency));
+            }
+            String key = candidate.key;
+            node.forEachChild((label, child) -> {
+                if (child.maxFrequency == Integer.MIN_VALUE) return; // no words below
+                queue.add(new Candidate<>(child, key + label, child.maxFrequency));
+            });
+        }
+        if (EngineMetrics.ENABLED && stats != null) {
+            // Prefix walk plus expansions; everything still queued was cut off by the limit
+            stats.record(prefix.length() + expanded - 1, results.size() + queue.size());
+        }
+        return results;
+    }
+    
+    /**
+     * bestFirstSearch into a sink, using its BestFirstQueue instead of Candidate objects
+     */
+    private void bestFirstSearch(TrieNode start, int prefixLength, int limit, ResultSink sink) {
+        BestFirstQueue queue = sink.queue();
+        queue.reset(prefixLength);
+        queue.offerStart(start);
+        int expanded = 0;
+        
+        while (!queue.isEmpty() && sink.size() < limit) {
+            TrieNode node = queue.poll();
+            if (queue.polledWord()) {
+                sink.add(node.word, node.frequency);
+                continue;
+            }
+            
+            expanded++;
+            if (node.isEndOfWord) {
+                queue.offerWord(node);
+            }
+            queue.expand(node);
+        }
+        if (EngineMetrics.ENABLED) {
+            searchStatistics.record(prefixLength + expanded - 1, sink.size() + queue.size());
+        }
+    }
+    
+    /**
+     * Update the ranking data along an insert/update path after a word's frequency changed
+     */
+    private void refreshRanking(TrieNode[] path, String word, int oldFrequency, int newFrequency) {
+        if (searchMode == SearchMode.BEST_FIRST) {
+            refreshMaxFrequency(path, oldFrequency, newFrequency);
+        } else {
+            refreshTopWords(path, word, oldFrequency, newFrequency);
+        }
+    }
+    
+    /**
+     * Keep each path node's subtree max frequency exact so best-first search can prune on it
+     */
+    private void refreshMaxFrequency(TrieNode[] path, int oldFrequency, int newFrequency) {
+        if (newFrequency >= oldFrequency) {
+            for (TrieNode node : path) {
+                node.maxFrequency = Math.max(node.maxFrequency, newFrequency);
+            }
+            return;
+        }
+        
+        // Recompute bottom-up; once a node's max is unchanged its ancestors are too
+        for (int i = path.length - 1; i >= 0; i--) {
+            TrieNode node = path[i];
+            int max = node.isEndOfWord ? node.frequency : Integer.MIN_VALUE;
+            for (TrieNode child : node.children()) {
+                max = Math.max(max, child.maxFrequency);
+            }
+            if (max == node.maxFrequency) break;
+            node.maxFrequency = max;
+        }
+    }
+    
+    /**
+     * Keep the top K lists along an insert/update path in sync with a word's new frequency.
+     * path[0] is the root and path[path.length - 1] is the word's end node.
+     */
+    private void refreshTopWords(TrieNode[] path, String word, int oldFrequency, int newFrequency) {
+        if (newFrequency >= oldFrequency) {
+            // A rise can only move the word up, so offer it to every list on the path
+            WordFrequency entry = new WordFrequency(word, newFrequency);
+            for (TrieNode node : path) {
+                offerTopWord(node.topWords, entry);
+            }
+            return;
+        }
+        
+        // A drop may let a word that was cut off back in, so rebuild bottom-up from the children.
+        // Once a list no longer holds the word, no ancestor list holds it either.
+        for (int i = path.length - 1; i >= 0; i--) {
+            TrieNode node = path[i];
+            if (indexOfWord(node.topWords, word) < 0) break;
+            rebuildTopWords(node);
+        }
+    }
+    
+    private void offerTopWord(List<WordFrequency> topWords, WordFrequency entry) {
+        int existing = indexOfWord(topWords, entry.word);
+        if (existing >= 0) {
+            topWords.remove(existing);
+        }
+        
+        int position = 0;
+        while (position < topWords.size() && WordFrequency.RANKING.compare(topWords.get(position), entry) < 0) {
+            position++;
+        }
+        if (position >= suggestionLimit) return;
+        
+        topWords.add(position, entry);
+        if (topWords.size() > suggestionLimit) {
+            topWords.remove(topWords.size() - 1);
+        }
+    }
+    
+    private void rebuildTopWords(TrieNode node) {
+        List<WordFrequency> candidates = new ArrayList<>();
         if (node.isEndOfWord) {
-            results.add(new WordFrequency(node.word, node.frequency));
+            candidates.add(new WordFrequency(node.word, node.frequency));
+        }
+        for (TrieNode child : node.children()) {
+            candidates.addAll(child.topWords);
         }
+        candidates.sort(WordFrequency.RANKING);
         
-        for (TrieNode child : node.children.values()) {
-            collectWords(child, results);
+        node.topWords.clear();
+        node.topWords.addAll(candidates.subList(0, Math.min(suggestionLimit, candidates.size())));
+    }
+    
+    private static int indexOfWord(List<WordFrequency> topWords, String word) {
+        for (int i = 0; i < topWords.size(); i++) {
+            if (topWords.get(i).word.equals(word)) return i;
         }
+        return -1;
+    }
+    
+    /**
+     * Move every top-level branch of another Trie under this Trie's root. DictionaryLoader
+     * uses this to join subtries built in parallel. The other Trie must have the same
+     * configuration and must not be used afterwards.
+     */
+    void graft(Trie other) {
+        if (other.suggestionLimit != suggestionLimit || other.searchMode != searchMode
+                || other.nodeLayout != nodeLayout) {
+            throw new IllegalArgumentException("Cannot graft a Trie with a different configuration");
+        }
+        modCount++;
+        
+        Map<Character, TrieNode> branches = new LinkedHashMap<>();
+        other.root.forEachChild(branches::put);
+        for (Map.Entry<Character, TrieNode> branch : branches.entrySet()) {
+            TrieNode existing = root.child(branch.getKey());
+            if (existing != null) {
+                // Fold the existing branch into the incoming one, which is usually far larger
+                List<WordFrequency> words = new ArrayList<>();
+                collectWords(existing, words);
+                for (WordFrequency wf : words) {
+                    other.insert(wf.word, wf.frequency);
+                }
+                releaseNodes(existing);
+                wordCount -= words.size();
+            }
+            root.addChild(branch.getKey(), branch.getValue());
+        }
+        nodeCount += other.nodeCount - 1;
+        wordCount += other.wordCount;
+        
+        if (searchMode == SearchMode.BEST_FIRST) {
+            int max = root.isEndOfWord ? root.frequency : Integer.MIN_VALUE;
+            for (TrieNode child : root.children()) {
+                max = Math.max(max, child.maxFrequency);
+            }
+            root.maxFrequency = max;
+        } else {
+            rebuildTopWords(root);
+        }
+    }
+    
+    /**
+     * Forget the nodes of a subtree that is being detached: drop them from nodeCount and
+     * from the compaction queue, which would otherwise keep them reachable
+     */
+    private void releaseNodes(TrieNode node) {
+        Deque<TrieNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            TrieNode next = stack.pop();
+            nodeCount--;
+            if (!compactionQueue.isEmpty()) compactionQueue.remove(next);
+            for (TrieNode child : next.children()) {
+                stack.push(child);
+            }
+        }
+    }
+    
+    /**
+     * Helper method to collect all words from a node using DFS (with an explicit stack,
+     * so word length is not limited by the thread's stack)
+     */
+    private void collectWords(TrieNode node, List<WordFrequency> results) {
+        Deque<TrieNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            TrieNode current = stack.pop();
+            if (current.isEndOfWord) {
+                results.add(new WordFrequency(current.word, current.frequency));
+            }
+            for (TrieNode child : current.children()) {
+                stack.push(child);
+            }
+        }
+    }
+    
+    /**
+     * Words starting with prefix (every word for "" or null), one at a time in the given
+     * order, without collecting them first. The iterator holds only a stack of pending
+     * nodes (LEXICOGRAPHIC) or the best-first frontier (FREQUENCY) and fails with a
+     * ConcurrentModificationException once the Trie is written.
+     */
+    public Iterator<WordFrequency> iterator(String prefix, WordPage.Order order) {
+        return iteratorAfter(prefix == null ? "" : prefix.toLowerCase(), order, null);
+    }
+    
+    /**
+     * iterator(prefix, order) as a sequential Stream, e.g. for exports
+     */
+    public Stream<WordFrequency> stream(String prefix, WordPage.Order order) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(prefix, order),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+    
+    /**
+     * Up to pageSize words starting with prefix in the given order, continuing after the
+     * page that issued cursor (null for the first page). A LEXICOGRAPHIC page resumes in
+     * O(word length) however deep it is, so it suits paging through a whole dictionary.
+     * A FREQUENCY page skips past every subtree node holding a better-ranked word before
+     * its first result, so later pages cost more.
+     */
+    public WordPage page(String prefix, WordPage.Order order, String cursor, int pageSize) {
+        String lowerPrefix = prefix == null ? "" : prefix.toLowerCase();
+        WordPage.Position after = cursor == null ? null : WordPage.decode(cursor, order, lowerPrefix);
+        return WordPage.collect(iteratorAfter(lowerPrefix, order, after), order, lowerPrefix, pageSize);
+    }
+    
+    private Iterator<WordFrequency> iteratorAfter(String lowerPrefix, WordPage.Order order, WordPage.Position after) {
+        TrieNode start = root;
+        for (int i = 0; i < lowerPrefix.length() && start != null; i++) {
+            start = start.child(lowerPrefix.charAt(i));
+        }
+        if (start == null) return Collections.emptyIterator();
+        return order == WordPage.Order.LEXICOGRAPHIC
+                ? new LexicographicIterator(start, lowerPrefix.length(), after)
+                : new RankingIterator(start, lowerPrefix, after);
+    }
+    
+    /**
+     * Shared hasNext/next over advance(), which returns the next word or null at the end
+     */
+    private abstract class WordIterator implements Iterator<WordFrequency> {
+        private final int expectedModCount = modCount;
+        private WordFrequency next;
+        
+        abstract WordFrequency advance();
+        
+        @Override
+        public boolean hasNext() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+        
+        @Override
+        public WordFrequency next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            WordFrequency result = next;
+            next = null;
+            return result;
+        }
+    }
+    
+    /**
+     * Pre-order walk with children pushed largest label first, so the stack pops words in
+     * dictionary order
+     */
+    private final class LexicographicIterator extends WordIterator implements TrieNode.ChildVisitor {
+        private final Deque<TrieNode> stack = new ArrayDeque<>();
+        // Labels pushChildren skips (at or below it); -1 pushes every child
+        private int floor = -1;
+        
+        LexicographicIterator(TrieNode start, int depth, WordPage.Position after) {
+            if (after == null) {
+                stack.push(start);
+                return;
+            }
+            // Seek: the words after `after` are its extensions, then the larger siblings
+            // along its path, nearest first, so those are pushed from the top down
+            TrieNode node = start;
+            String word = after.word;
+            for (int i = depth; i < word.length() && node != null; i++) {
+                pushChildren(node, word.charAt(i));
+                node = node.child(word.charAt(i));
+            }
+            if (node != null) {
+                pushChildren(node, -1);
+            }
+        }
+        
+        /**
+         * Push the node's children labelled above floor (-1 for all), smallest on top
+         */
+        private void pushChildren(TrieNode node, int floor) {
+            if (node.childCount() == 0) return;
+            this.floor = floor;
+            node.forEachChildDescending(this);
+        }
+        
+        @Override
+        public void visit(char label, TrieNode child) {
+            if (label > floor) {
+                stack.push(child);
+            }
+        }
+        
+        @Override
+        WordFrequency advance() {
+            while (!stack.isEmpty()) {
+                TrieNode node = stack.pop();
+                pushChildren(node, -1);
+                if (node.isEndOfWord) {
+                    return new WordFrequency(node.word, node.frequency);
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Best-first walk like bestFirstSearch, without a limit. When resuming after a
+     * position, words ranked up to it are never queued and every node's bound is capped at
+     * the position's frequency, which still bounds the words it can contribute.
+     */
+    private final class RankingIterator extends WordIterator {
+        private final PriorityQueue<Candidate<TrieNode>> queue = new PriorityQueue<>(Candidate.ORDER);
+        private final WordPage.Position after;
+        
+        RankingIterator(TrieNode start, String prefix, WordPage.Position after) {
+            this.after = after;
+            offer(start, prefix);
+        }
+        
+        private void offer(TrieNode node, String key) {
+            int bound = subtreeMaxFrequency(node);
+            if (bound == Integer.MIN_VALUE) return; // no words below
+            queue.add(new Candidate<>(node, key, after == null ? bound : Math.min(bound, after.frequency)));
+        }
+        
+        @Override
+        WordFrequency advance() {
+            while (!queue.isEmpty()) {
+                Candidate<TrieNode> candidate = queue.poll();
+                if (candidate.node == null) {
+                    return new WordFrequency(candidate.key, candidate.rank);
+                }
+                TrieNode node = candidate.node;
+                if (node.isEndOfWord && (after == null || after.precedes(node.word, node.frequency))) {
+                    queue.add(new Candidate<>(null, node.word, node.frequency));
+                }
+                String key = candidate.key;
+                node.forEachChild((label, child) -> offer(child, key + label));
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Highest frequency in the node's subtree, MIN_VALUE if it holds no words
+     */
+    private int subtreeMaxFrequency(TrieNode node) {
+        if (searchMode == SearchMode.BEST_FIRST) {
+            return node.maxFrequency;
+        }
+        return node.topWords.isEmpty() ? Integer.MIN_VALUE : node.topWords.get(0).frequency;
     }
     
     /**
      * Get all words in the Trie (for debugging/statistics)
      */
+    @Override
     public List<WordFrequency> getAllWords() {
         List<WordFrequency> results = new ArrayList<>();
         collectWords(root, results);
@@ -121,6 +1224,16 @@ public class Trie {
  * Helper class to store word-frequency pairs
  */
 class WordFrequency {
+    /**
+     * Suggestion order: frequency (descending) and then lexicographically
+     */
+    static final Comparator<WordFrequency> RANKING = (a, b) -> {
+        if (b.frequency != a.frequency) {
+            return Integer.compare(b.frequency, a.frequency);
+        }
+        return a.word.compareTo(b.word);
+    };
+    
     String word;
     int frequency;
     
@@ -1,20 +1,102 @@
 package autocomplete;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
- * TrieNode class representing each node in the Trie data structure
+ * TrieNode class representing each node in the Trie data structure.
+ * Subclasses decide how the children are stored (see Trie.NodeLayout).
  */
-public class TrieNode {
-    Map<Character, TrieNode> children;
+public abstract class TrieNode {
     boolean isEndOfWord;
     int frequency;
     String word;
+    // Best-ranked words in this node's subtree, at most the Trie's suggestion limit
+    List<WordFrequency> topWords;
+    // Highest frequency of any word in this node's subtree (MIN_VALUE while it has none)
+    int maxFrequency;
     
-    public TrieNode() {
-        this.children = new HashMap<>();
+    /**
+     * @param keepTopWords whether this node carries a top K list (false for best-first search)
+     */
+    protected TrieNode(boolean keepTopWords) {
         this.isEndOfWord = false;
         this.frequency = 0;
         this.word = "";
+        this.topWords = keepTopWords ? new ArrayList<>() : Collections.emptyList();
+        this.maxFrequency = Integer.MIN_VALUE;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Callback for walking a node's children together with their edge labels. It is a
+     * BiConsumer so a HashMap can be walked with forEach, which needs no iterator.
+     */
+    interface ChildVisitor extends BiConsumer<Character, TrieNode> {
+        void visit(char label, TrieNode child);
+        
+        @Override
+        default void accept(Character label, TrieNode child) {
+            visit(label, child);
+        }
+    }
+    
+    /**
+     * Child reached by the given character, or null if there is none
+     */
+    abstract TrieNode child(char ch);
+    
+    /**
+     * Attach a child under a character, replacing any existing one, and return it
+     */
+    abstract TrieNode addChild(char ch, TrieNode child);
+    
+    /**
+     * Detach the child under a character and return it, or null if there is none
+     */
+    abstract TrieNode removeChild(char ch);
+    
+    /**
+     * Give back child-container memory left over from removed children; true if any was
+     * released. Nodes that always size their containers exactly have nothing to do.
+     */
+    boolean compact() {
+        return false;
+    }
+    
+    abstract int childCount();
+    
+    abstract Iterable<TrieNode> children();
+    
+    abstract void forEachChild(ChildVisitor visitor);
+    
+    /**
+     * Walk the children in descending label order (for in-order traversal with a stack)
+     */
+    abstract void forEachChildDescending(ChildVisitor visitor);
+    
+    /**
+     * Heap taken by the node object and its child container (see HeapEstimate)
+     */
+    abstract long shallowBytes();
+    
+    /**
+     * Rough heap footprint of this node alone: node, children container, top K list and,
+     * for a word node, the word string and its one ranking entry (shared along the path)
+     */
+    long estimatedBytes() {
+        long bytes = shallowBytes();
+        if (topWords instanceof ArrayList) {
+            bytes += HeapEstimate.ARRAY_LIST;
+            if (!topWords.isEmpty()) {
+                bytes += HeapEstimate.array(HeapEstimate.REFERENCE, Math.max(10, topWords.size()));
+            }
+        }
+        if (isEndOfWord) {
+            bytes += HeapEstimate.string(word);
+            if (topWords instanceof ArrayList) {
+                bytes += HeapEstimate.WORD_FREQUENCY;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,486 @@
+package autocomplete;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Read-only dictionary compiled into a minimal acyclic word automaton (a DAWG): words
+ * share prefixes as in a trie and also suffixes ("-ing", "-tion"), and no word string
+ * is stored at all.
+ * 
+ * A shared state cannot hold per-word data, so frequencies are attached the way an FST
+ * attaches outputs: every state knows how many words its suffixes complete, and every
+ * arc how many words sort before it within its state. Summing the arc counts along a
+ * word's path gives its rank in sorted order, a minimal perfect hash (indexOf / wordAt),
+ * and frequencies live in one int array by rank. The words under a prefix are one
+ * contiguous run of ranks, so the top K for a prefix are K range-maximum queries on a
+ * tree over the frequency array: take the best word of the run, then the best of each
+ * part left on either side of it, best first.
+ * 
+ * Built with the incremental algorithm for sorted input (Daciuk et al.): once the next
+ * word diverges from the previous one, the previous word's tail can no longer change,
+ * so its states are merged with equal registered states right away. A sorted file can
+ * therefore be compiled without holding its words in memory.
+ * 
+ * Like FrozenTrie, a WordAutomaton never changes after construction and is safe to
+ * share between threads. insert and updateFrequency throw.
+ */
+public class WordAutomaton implements PrefixIndex, InstrumentedIndex {
+    private final int suggestionLimit;
+    private final int stateCount;
+    private final int root;
+    // Arcs of state s are firstArc[s] .. firstArc[s + 1] - 1, sorted by label
+    private final int[] firstArc;
+    private final char[] arcLabels;
+    private final int[] arcTargets;
+    // Words of the state (its own, if final, and earlier arcs') that sort before the arc's
+    private final int[] arcOffsets;
+    // Words each state's suffixes complete, its own included if final
+    private final int[] wordCount;
+    private final long[] finalStates;
+    private final int[] frequencies;
+    // Range maximum tree over ranks: node i covers 2i and 2i + 1, nodes from n on are ranks
+    private final int[] bestRank;
+    private final SearchStatistics searchStatistics = EngineMetrics.ENABLED ? new SearchStatistics() : null;
+    
+    /**
+     * Compile the given words in any order; duplicates keep their highest frequency.
+     * Use getAllWords() of a Trie to compile it.
+     */
+    public WordAutomaton(Collection<WordFrequency> words, int suggestionLimit) {
+        this(sortedBuilder(words), suggestionLimit);
+    }
+    
+    private WordAutomaton(Builder builder, int suggestionLimit) {
+        if (suggestionLimit < 1) {
+            throw new IllegalArgumentException("suggestionLimit must be positive: " + suggestionLimit);
+        }
+        this.suggestionLimit = suggestionLimit;
+        
+        List<Builder.State> states = builder.finish();
+        this.stateCount = states.size();
+        this.root = stateCount - 1;
+        int arcs = 0;
+        for (Builder.State state : states) {
+            arcs += state.arcCount;
+        }
+        this.firstArc = new int[stateCount + 1];
+        this.arcLabels = new char[arcs];
+        this.arcTargets = new int[arcs];
+        this.arcOffsets = new int[arcs];
+        this.wordCount = new int[stateCount];
+        this.finalStates = new long[(stateCount + 63) >>> 6];
+        
+        // States were registered children first, so every target's count is known in time
+        int arc = 0;
+        for (int s = 0; s < stateCount; s++) {
+            Builder.State state = states.get(s);
+            firstArc[s] = arc;
+            int count = 0;
+            if (state.isFinal) {
+                finalStates[s >>> 6] |= 1L << s;
+                count = 1;
+            }
+            for (int i = 0; i < state.arcCount; i++) {
+                arcLabels[arc] = state.labels[i];
+                arcTargets[arc] = state.targets[i].id;
+                arcOffsets[arc] = count;
+                count += wordCount[state.targets[i].id];
+                arc++;
+            }
+            wordCount[s] = count;
+        }
+        firstArc[stateCount] = arc;
+        
+        this.frequencies = Arrays.copyOf(builder.frequencies, builder.words);
+        int n = frequencies.length;
+        this.bestRank = new int[Math.max(1, n)];
+        for (int node = n - 1; node >= 1; node--) {
+            bestRank[node] = better(treeValue(2 * node), treeValue(2 * node + 1));
+        }
+    }
+    
+    /**
+     * Compile a dictionary file sorted by word, streaming. Lines are read like
+     * DictionaryLoader reads them ("word&lt;TAB&gt;frequency" or "word,frequency"); lower-cased
+     * words must be in String.compareTo order (LC_ALL=C sort for ASCII), and repeated
+     * words keep their highest frequency.
+     */
+    public static WordAutomaton compile(Path sortedFile, int suggestionLimit) throws IOException {
+        Builder builder = new Builder();
+        try (BufferedReader reader = Files.newBufferedReader(sortedFile, StandardCharsets.UTF_8)) {
+            DictionaryLoader.Entry entry = new DictionaryLoader.Entry();
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!entry.parse(line)) continue;
+                if (!builder.add(entry.word, entry.frequency)) {
+                    throw new IllegalArgumentException(sortedFile + ":" + lineNumber + ": \"" + entry.word
+                            + "\" sorts before the previous word; the file must be sorted");
+                }
+            }
+        }
+        return new WordAutomaton(builder, suggestionLimit);
+    }
+    
+    private static Builder sortedBuilder(Collection<WordFrequency> words) {
+        Map<String, Integer> unique = new HashMap<>();
+        for (WordFrequency wf : words) {
+            if (wf.word == null || wf.word.isEmpty()) continue;
+            unique.merge(wf.word.toLowerCase(), wf.frequency, Math::max);
+        }
+        String[] sorted = unique.keySet().toArray(new String[0]);
+        Arrays.sort(sorted);
+        
+        Builder builder = new Builder();
+        for (String word : sorted) {
+            builder.add(word, unique.get(word));
+        }
+        return builder;
+    }
+    
+    @Override
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+    
+    @Override
+    public int wordCount() {
+        return frequencies.length;
+    }
+    
+    public int stateCount() {
+        return stateCount;
+    }
+    
+    public int arcCount() {
+        return arcLabels.length;
+    }
+    
+    @Override
+    public int nodeCount() {
+        return stateCount;
+    }
+    
+    @Override
+    public SearchStatistics searchStatistics() {
+        return searchStatistics;
+    }
+    
+    @Override
+    public long estimatedHeapBytes() {
+        return HeapEstimate.align(HeapEstimate.HEADER + 3 * 4 + 9 * HeapEstimate.REFERENCE)
+                + HeapEstimate.array(4, firstArc.length)
+                + HeapEstimate.array(2, arcLabels.length)
+                + HeapEstimate.array(4, arcTargets.length)
+                + HeapEstimate.array(4, arcOffsets.length)
+                + HeapEstimate.array(4, wordCount.length)
+                + HeapEstimate.array(8, finalStates.length)
+                + HeapEstimate.array(4, frequencies.length)
+                + HeapEstimate.array(4, bestRank.length);
+    }
+    
+    @Override
+    public void insert(String word, int frequency) {
+        throw new UnsupportedOperationException("WordAutomaton is read-only");
+    }
+    
+    @Override
+    public void updateFrequency(String word, int increment) {
+        throw new UnsupportedOperationException("WordAutomaton is read-only");
+    }
+    
+    /**
+     * Rank of word among all words in sorted order, or -1 if it is not in the dictionary
+     */
+    public int indexOf(String word) {
+        if (word == null || word.isEmpty()) return -1;
+        
+        String lowerWord = word.toLowerCase();
+        int state = root;
+        int rank = 0;
+        for (int i = 0; i < lowerWord.length(); i++) {
+            int arc = arc(state, lowerWord.charAt(i));
+            if (arc < 0) return -1;
+            rank += arcOffsets[arc];
+            state = arcTargets[arc];
+        }
+        return isFinal(state) ? rank : -1;
+    }
+    
+    /**
+     * The word with the given rank (see indexOf)
+     */
+    public String wordAt(int rank) {
+        Objects.checkIndex(rank, frequencies.length);
+        StringBuilder word = new StringBuilder();
+        int state = root;
+        int remaining = rank;
+        while (!(isFinal(state) && remaining == 0)) {
+            // Last arc whose offset does not pass the rank leads to the word
+            int low = firstArc[state];
+            int high = firstArc[state + 1] - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (arcOffsets[mid] <= remaining) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            remaining -= arcOffsets[low];
+            word.append(arcLabels[low]);
+            state = arcTargets[low];
+        }
+        return word.toString();
+    }
+    
+    /**
+     * Frequency of word, or 0 if it is not in the dictionary
+     */
+    public int frequencyOf(String word) {
+        int rank = indexOf(word);
+        return rank < 0 ? 0 : frequencies[rank];
+    }
+    
+    /**
+     * Search for words with given prefix and return the top K by frequency.
+     * Time Complexity: O(k log b + K (log n + log K + m)) for k = prefix length,
+     * n = word count and m = result word length
+     */
+    @Override
+    public List<WordFrequency> search(String prefix) {
+        List<WordFrequency> results = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty()) return results;
+        
+        String lowerPrefix = prefix.toLowerCase();
+        int state = root;
+        int from = 0;
+        for (int i = 0; i < lowerPrefix.length(); i++) {
+            int arc = arc(state, lowerPrefix.charAt(i));
+            if (arc < 0) {
+                if (EngineMetrics.ENABLED) searchStatistics.record(i + 1, 0);
+                return results; // Prefix not found
+            }
+            from += arcOffsets[arc];
+            state = arcTargets[arc];
+        }
+        int to = from + wordCount[state];
+        if (from == to) return results; // only an empty dictionary has a state without words
+        
+        // Ranges of ranks, each queued under its best word: {from, to, best}
+        PriorityQueue<int[]> ranges = new PriorityQueue<>(
+                (a, b) -> a[2] == b[2] ? 0 : better(a[2], b[2]) == a[2] ? -1 : 1);
+        ranges.add(new int[] {from, to, bestIn(from, to)});
+        int queried = 1;
+        while (!ranges.isEmpty() && results.size() < suggestionLimit) {
+            int[] range = ranges.poll();
+            int best = range[2];
+            results.add(new WordFrequency(wordAt(best), frequencies[best]));
+            if (range[0] < best) {
+                ranges.add(new int[] {range[0], best, bestIn(range[0], best)});
+                queried++;
+            }
+            if (best + 1 < range[1]) {
+                ranges.add(new int[] {best + 1, range[1], bestIn(best + 1, range[1])});
+                queried++;
+            }
+        }
+        if (EngineMetrics.ENABLED) searchStatistics.record(lowerPrefix.length() + queried, results.size() + ranges.size());
+        return results;
+    }
+    
+    /**
+     * Get all words (for debugging/statistics)
+     */
+    @Override
+    public List<WordFrequency> getAllWords() {
+        List<WordFrequency> results = new ArrayList<>(frequencies.length);
+        for (int rank = 0; rank < frequencies.length; rank++) {
+            results.add(new WordFrequency(wordAt(rank), frequencies[rank]));
+        }
+        results.sort((a, b) -> Integer.compare(b.frequency, a.frequency));
+        return results;
+    }
+    
+    private boolean isFinal(int state) {
+        return (finalStates[state >>> 6] & (1L << state)) != 0;
+    }
+    
+    private int arc(int state, char ch) {
+        int low = firstArc[state];
+        int high = firstArc[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (arcLabels[mid] < ch) {
+                low = mid + 1;
+            } else if (arcLabels[mid] > ch) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Best ranked word among ranks from .. to - 1 (not empty)
+     */
+    private int bestIn(int from, int to) {
+        int best = -1;
+        int n = frequencies.length;
+        for (int low = from + n, high = to + n; low < high; low >>>= 1, high >>>= 1) {
+            if ((low & 1) != 0) best = better(best, treeValue(low++));
+            if ((high & 1) != 0) best = better(best, treeValue(--high));
+        }
+        return best;
+    }
+    
+    private int treeValue(int node) {
+        return node >= frequencies.length ? node - frequencies.length : bestRank[node];
+    }
+    
+    /**
+     * The better ranked of two words: higher frequency, then lower rank (earlier in sorted
+     * order), as in WordFrequency.RANKING; -1 stands for no word
+     */
+    private int better(int a, int b) {
+        if (a < 0) return b;
+        if (b < 0) return a;
+        if (frequencies[a] != frequencies[b]) {
+            return frequencies[a] > frequencies[b] ? a : b;
+        }
+        return Math.min(a, b);
+    }
+    
+    /**
+     * Incremental construction of the minimal automaton from words in sorted order
+     */
+    private static final class Builder {
+        private static final char[] NO_LABELS = new char[0];
+        private static final State[] NO_TARGETS = new State[0];
+        
+        /**
+         * A state under construction. Once registered it never changes, and two
+         * registered states are equal when they have the same finality and arcs.
+         */
+        static final class State {
+            boolean isFinal;
+            char[] labels = NO_LABELS;
+            State[] targets = NO_TARGETS;
+            int arcCount;
+            int id = -1;
+            
+            void addArc(char label, State target) {
+                if (arcCount == labels.length) {
+                    labels = Arrays.copyOf(labels, Math.max(2, arcCount * 2));
+                    targets = Arrays.copyOf(targets, labels.length);
+                }
+                labels[arcCount] = label;
+                targets[arcCount++] = target;
+            }
+            
+            @Override
+            public boolean equals(Object other) {
+                if (!(other instanceof State)) return false;
+                State state = (State) other;
+                if (isFinal != state.isFinal || arcCount != state.arcCount) return false;
+                for (int i = 0; i < arcCount; i++) {
+                    if (labels[i] != state.labels[i] || targets[i] != state.targets[i]) return false;
+                }
+                return true;
+            }
+            
+            @Override
+            public int hashCode() {
+                int hash = isFinal ? 1 : 0;
+                for (int i = 0; i < arcCount; i++) {
+                    hash = 31 * (31 * hash + labels[i]) + targets[i].id;
+                }
+                return hash;
+            }
+        }
+        
+        private final State root = new State();
+        private final Map<State, State> register = new HashMap<>();
+        // Registered states in registration order, children before parents
+        private final List<State> states = new ArrayList<>();
+        // States along the previous word: path[i] is reached by its first i characters
+        private State[] path = {root};
+        private String previous = "";
+        private int[] frequencies = new int[16];
+        private int words;
+        
+        /**
+         * Add the next word; false if it sorts before the previous one. A repeat of the
+         * previous word keeps the higher frequency.
+         */
+        boolean add(String word, int frequency) {
+            int order = word.compareTo(previous);
+            if (order < 0) return false;
+            if (order == 0) {
+                frequencies[words - 1] = Math.max(frequencies[words - 1], frequency);
+                return true;
+            }
+            
+            int common = 0;
+            int max = Math.min(previous.length(), word.length());
+            while (common < max && previous.charAt(common) == word.charAt(common)) {
+                common++;
+            }
+            mergeTail(common);
+            
+            if (path.length <= word.length()) {
+                path = Arrays.copyOf(path, Math.max(path.length * 2, word.length() + 1));
+            }
+            for (int i = common; i < word.length(); i++) {
+                State next = new State();
+                path[i].addArc(word.charAt(i), next);
+                path[i + 1] = next;
+            }
+            path[word.length()].isFinal = true;
+            
+            if (words == frequencies.length) {
+                frequencies = Arrays.copyOf(frequencies, words * 2);
+            }
+            frequencies[words++] = frequency;
+            previous = word;
+            return true;
+        }
+        
+        /**
+         * Register the previous word's states deeper than keep, deepest first, replacing
+         * each by an equal registered state where there is one
+         */
+        private void mergeTail(int keep) {
+            for (int depth = previous.length(); depth > keep; depth--) {
+                State state = path[depth];
+                State parent = path[depth - 1];
+                State existing = register.get(state);
+                if (existing != null) {
+                    parent.targets[parent.arcCount - 1] = existing;
+                } else {
+                    state.id = states.size();
+                    states.add(state);
+                    register.put(state, state);
+                }
+                path[depth] = null;
+            }
+        }
+        
+        /**
+         * Register what is left and return every state, root last
+         */
+        List<State> finish() {
+            mergeTail(0);
+            root.id = states.size();
+            states.add(root);
+            return states;
+        }
+    }
+}
\ No newline at end of file
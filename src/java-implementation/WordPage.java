@@ -0,0 +1,150 @@
+package autocomplete;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * One page of an enumeration of the words under a prefix (see Trie.page), with an opaque
+ * cursor for the next page.
+ * 
+ * A cursor records the position after the page's last word (its word, and its frequency
+ * for FREQUENCY order) rather than an offset, so the next page starts exactly after that
+ * word even when words were added or re-ranked in between, and resuming does not depend
+ * on how many pages came before. Cursors are only valid for the prefix and order they
+ * were issued for.
+ */
+public final class WordPage {
+    /**
+     * Enumeration order
+     */
+    public enum Order {
+        // By word, like a dictionary; resuming costs O(word length)
+        LEXICOGRAPHIC,
+        // By frequency (descending), then word, like suggestions
+        FREQUENCY
+    }
+    
+    private static final int CURSOR_VERSION = 1;
+    
+    private final List<WordFrequency> words;
+    private final String nextCursor;
+    
+    WordPage(List<WordFrequency> words, String nextCursor) {
+        this.words = Collections.unmodifiableList(words);
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<WordFrequency> getWords() {
+        return words;
+    }
+    
+    /**
+     * Cursor for the page after this one, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+    
+    /**
+     * Where a cursor resumes: just after the entry (word, frequency) in the given order
+     */
+    static final class Position {
+        final Order order;
+        final String prefix;
+        final String word;
+        final int frequency;
+        
+        Position(Order order, String prefix, String word, int frequency) {
+            this.order = order;
+            this.prefix = prefix;
+            this.word = word;
+            this.frequency = frequency;
+        }
+        
+        /**
+         * Whether this position comes before the entry, i.e. the entry is still to come
+         */
+        boolean precedes(String otherWord, int otherFrequency) {
+            if (order == Order.FREQUENCY && otherFrequency != frequency) {
+                return otherFrequency < frequency;
+            }
+            return otherWord.compareTo(word) > 0;
+        }
+    }
+    
+    /**
+     * Take up to pageSize entries from an ordered enumeration of the words under prefix
+     */
+    static WordPage collect(Iterator<WordFrequency> ordered, Order order, String prefix, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        List<WordFrequency> words = new ArrayList<>(Math.min(pageSize, 1024));
+        while (words.size() < pageSize && ordered.hasNext()) {
+            words.add(ordered.next());
+        }
+        String cursor = null;
+        if (ordered.hasNext()) {
+            WordFrequency last = words.get(words.size() - 1);
+            cursor = encode(new Position(order, prefix, last.word, last.frequency));
+        }
+        return new WordPage(words, cursor);
+    }
+    
+    /**
+     * Page through a full word list (for indexes without ordered enumeration)
+     */
+    static WordPage fromAllWords(List<WordFrequency> allWords, String prefix, Order order, String cursor, int pageSize) {
+        String lowerPrefix = prefix == null ? "" : prefix.toLowerCase();
+        Position after = cursor == null ? null : decode(cursor, order, lowerPrefix);
+        List<WordFrequency> matching = new ArrayList<>();
+        for (WordFrequency entry : allWords) {
+            if (entry.word.startsWith(lowerPrefix) && (after == null || after.precedes(entry.word, entry.frequency))) {
+                matching.add(entry);
+            }
+        }
+        matching.sort(order == Order.FREQUENCY ? WordFrequency.RANKING : Comparator.comparing(entry -> entry.word));
+        return collect(matching.iterator(), order, lowerPrefix, pageSize);
+    }
+    
+    static String encode(Position position) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(CURSOR_VERSION);
+            out.writeByte(position.order.ordinal());
+            out.writeUTF(position.prefix);
+            out.writeUTF(position.word);
+            out.writeInt(position.frequency);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+    
+    /**
+     * Decode a cursor issued for the given order and (lowercased) prefix
+     */
+    static Position decode(String cursor, Order order, String prefix) {
+        Position position;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            if (in.readByte() != CURSOR_VERSION) {
+                throw new IllegalArgumentException("Unsupported cursor version");
+            }
+            int ordinal = in.readByte();
+            if (ordinal < 0 || ordinal >= Order.values().length) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            position = new Position(Order.values()[ordinal], in.readUTF(), in.readUTF(), in.readInt());
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        if (position.order != order || !position.prefix.equals(prefix) || !position.word.startsWith(prefix)) {
+            throw new IllegalArgumentException("Cursor was issued for another prefix or order");
+        }
+        return position;
+    }
+}
\ No newline at end of file
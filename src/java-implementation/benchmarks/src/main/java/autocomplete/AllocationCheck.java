@@ -0,0 +1,59 @@
+package autocomplete;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Checks that Trie.search(CharSequence, ResultSink) allocates nothing: after a warm-up,
+ * the bytes the thread allocated over many searches (com.sun.management.ThreadMXBean)
+ * must be zero for every Trie kind. search(String) is measured alongside for scale.
+ * Exits with status 1 if any Trie kind allocated:
+ * 
+ *   java -cp benchmarks.jar autocomplete.AllocationCheck [words] [searches]
+ */
+public final class AllocationCheck {
+    private static final int PREFIXES = 4096;
+    
+    private AllocationCheck() {
+    }
+    
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int searches = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        SyntheticDictionary dictionary = SyntheticDictionary.of(size, 42);
+        
+        boolean allocated = false;
+        for (IndexKind kind : IndexKind.values()) {
+            PrefixIndex index = dictionary.build(kind, Trie.DEFAULT_SUGGESTION_LIMIT);
+            ResultSink sink = new ResultSink(Trie.DEFAULT_SUGGESTION_LIMIT);
+            String[] prefixes = dictionary.prefixes(3, PREFIXES, 7);
+            
+            // Warm up: lets the JIT compile the path and the sink's queue reach its size
+            for (int i = 0; i < searches; i++) {
+                index.search(prefixes[i & (PREFIXES - 1)], sink);
+            }
+            long start = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < searches; i++) {
+                index.search(prefixes[i & (PREFIXES - 1)], sink);
+            }
+            long sinkBytes = threads.getCurrentThreadAllocatedBytes() - start;
+            
+            start = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < searches; i++) {
+                index.search(prefixes[i & (PREFIXES - 1)]);
+            }
+            long listBytes = threads.getCurrentThreadAllocatedBytes() - start;
+            
+            boolean trie = index instanceof Trie;
+            allocated |= trie && sinkBytes > 0;
+            System.out.printf(Locale.ROOT, "%-30s sink %8.2f B/search   list %8.2f B/search%s%n",
+                    kind, (double) sinkBytes / searches, (double) listBytes / searches,
+                    trie ? (sinkBytes > 0 ? "   FAIL" : "   ok") : "");
+        }
+        if (allocated) {
+            System.exit(1);
+        }
+    }
+}
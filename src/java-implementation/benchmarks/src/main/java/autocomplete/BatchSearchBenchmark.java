@@ -0,0 +1,63 @@
+package autocomplete;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One batch of prefixes answered by a search() per prefix, by Trie.searchAll and by
+ * searchAll on the common ForkJoinPool. A batch holds batchSize typed words with every
+ * prefix of each (what a client prefetching keystrokes asks for), so prefixes nest.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class BatchSearchBenchmark {
+    @Param({"100000", "1000000"})
+    public int dictionarySize;
+    
+    @Param({"16", "256", "4096"})
+    public int batchSize;
+    
+    @Param({"TRIE_HASH_MAP_TOP_K", "TRIE_HASH_MAP_BEST_FIRST"})
+    public IndexKind index;
+    
+    private Trie trie;
+    private List<String> batch;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticDictionary dictionary = SyntheticDictionary.of(dictionarySize, 42);
+        trie = (Trie) dictionary.build(index, Trie.DEFAULT_SUGGESTION_LIMIT);
+        batch = new ArrayList<>();
+        for (String typed : dictionary.prefixes(5, batchSize, 11)) {
+            for (int length = 1; length <= typed.length(); length++) {
+                batch.add(typed.substring(0, length));
+            }
+        }
+    }
+    
+    @Benchmark
+    public int searchEach() {
+        int found = 0;
+        for (String prefix : batch) {
+            found += trie.search(prefix).size();
+        }
+        return found;
+    }
+    
+    @Benchmark
+    public Map<String, List<WordFrequency>> searchAll() {
+        return trie.searchAll(batch);
+    }
+    
+    @Benchmark
+    public Map<String, List<WordFrequency>> searchAllParallel() {
+        return trie.searchAll(batch, ForkJoinPool.commonPool());
+    }
+}
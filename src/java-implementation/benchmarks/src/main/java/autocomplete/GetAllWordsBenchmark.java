@@ -0,0 +1,35 @@
+package autocomplete;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getAllWords() latency: full enumeration plus the frequency sort
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class GetAllWordsBenchmark {
+    @Param({"10000", "100000"})
+    public int dictionarySize;
+    
+    @Param({"TRIE_HASH_MAP_TOP_K", "TRIE_SORTED_ARRAY_BEST_FIRST", "RADIX"})
+    public IndexKind index;
+    
+    private PrefixIndex trie;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        trie = SyntheticDictionary.of(dictionarySize, 42).build(index, Trie.DEFAULT_SUGGESTION_LIMIT);
+    }
+    
+    @Benchmark
+    public List<WordFrequency> getAllWords() {
+        return trie.getAllWords();
+    }
+}
@@ -0,0 +1,36 @@
+package autocomplete;
+
+/**
+ * The index implementations the benchmarks compare, selectable with -p index=...
+ */
+public enum IndexKind {
+    TRIE_HASH_MAP_TOP_K,
+    TRIE_HASH_MAP_BEST_FIRST,
+    TRIE_SORTED_ARRAY_TOP_K,
+    TRIE_SORTED_ARRAY_BEST_FIRST,
+    RADIX,
+    CONCURRENT,
+    // Read-only: only SyntheticDictionary.build can make one
+    WORD_AUTOMATON;
+    
+    PrefixIndex create(int suggestionLimit) {
+        switch (this) {
+            case TRIE_HASH_MAP_TOP_K:
+                return new Trie(suggestionLimit, Trie.SearchMode.TOP_K_LISTS, Trie.NodeLayout.HASH_MAP);
+            case TRIE_HASH_MAP_BEST_FIRST:
+                return new Trie(suggestionLimit, Trie.SearchMode.BEST_FIRST, Trie.NodeLayout.HASH_MAP);
+            case TRIE_SORTED_ARRAY_TOP_K:
+                return new Trie(suggestionLimit, Trie.SearchMode.TOP_K_LISTS, Trie.NodeLayout.SORTED_ARRAY);
+            case TRIE_SORTED_ARRAY_BEST_FIRST:
+                return new Trie(suggestionLimit, Trie.SearchMode.BEST_FIRST, Trie.NodeLayout.SORTED_ARRAY);
+            case RADIX:
+                return new RadixTrie(suggestionLimit);
+            case CONCURRENT:
+                return new ConcurrentTrie(suggestionLimit);
+            case WORD_AUTOMATON:
+                throw new UnsupportedOperationException("WORD_AUTOMATON is compiled, not filled by inserts");
+            default:
+                throw new AssertionError(this);
+        }
+    }
+}
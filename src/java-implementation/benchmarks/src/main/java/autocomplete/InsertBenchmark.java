@@ -0,0 +1,35 @@
+package autocomplete;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput: builds a fresh index from the whole dictionary per invocation and
+ * reports words inserted per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class InsertBenchmark {
+    private static final int WORDS = 100_000;
+    
+    @Param({"TRIE_HASH_MAP_TOP_K", "TRIE_HASH_MAP_BEST_FIRST", "TRIE_SORTED_ARRAY_BEST_FIRST", "RADIX", "CONCURRENT"})
+    public IndexKind index;
+    
+    private SyntheticDictionary dictionary;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        dictionary = SyntheticDictionary.of(WORDS, 42);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public PrefixIndex insertAll() {
+        return dictionary.build(index, Trie.DEFAULT_SUGGESTION_LIMIT);
+    }
+}
@@ -0,0 +1,573 @@
+package autocomplete;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test of AutocompleteSystem under mixed traffic: getSuggestions for
+ * every keystroke, selectSuggestion and addWord, from many threads at once. JMH measures
+ * one call in isolation; this measures the system as a server sees it. A plain main:
+ * 
+ *   java -cp benchmarks.jar autocomplete.LoadGenerator --rate=20000 --threads=8 --duration=30
+ * 
+ * Traffic is one deterministic sequence of operations, either generated from --seed or
+ * replayed from a log (--replay). Generated sessions pick a word of the synthetic
+ * dictionary by Zipf rank, type a prefix of it one keystroke at a time and then select
+ * it or move on; a few add a word nobody has seen. --record writes the sequence as a log.
+ * 
+ * With --rate the load is open-loop: operation i is due at start + i / rate whether or
+ * not earlier ones have finished, and whichever thread is free takes it. Latency is
+ * measured from when the operation was due, not from when a thread got to it, so a
+ * stall counts against every request that queued up behind it (the correction for
+ * coordinated omission); service time, from the actual start, is reported beside it.
+ * Without --rate every thread runs operations back to back (closed loop), where the two
+ * are the same and stalls hide. Options:
+ * 
+ *   --words=N         synthetic dictionary size (100000)
+ *   --seed=N          traffic and dictionary seed (42)
+ *   --zipf=S          Zipf exponent of word popularity (1.0)
+ *   --select=P        share of sessions that end in a selection (0.3)
+ *   --add=P           share of sessions that add a new word (0.01)
+ *   --replay=FILE     replay a log instead of generating sessions
+ *   --record=FILE     write the operations run as a log
+ *   --system=KIND     concurrent, snapshot, shards or trie (single thread only) (concurrent)
+ *   --shards=N        with --system=shards, ShardServer processes started on localhost (4)
+ *   --cache=N         enable the suggestion cache with N entries
+ *   --threads=N       worker threads (4)
+ *   --virtual         run the workers on virtual threads (Java 21 and later)
+ *   --rate=R          operations per second, 0 for closed loop (0)
+ *   --warmup=S        seconds run before measuring (5)
+ *   --duration=S      seconds measured (20)
+ *   --json=FILE       also write the report as JSON
+ *   --max-p99-ms=MS   exit with status 1 if the suggest p99 latency is above MS
+ * 
+ * A log holds one operation per line: "suggest&lt;TAB&gt;prefix", "select&lt;TAB&gt;word" or
+ * "add&lt;TAB&gt;word&lt;TAB&gt;frequency"; blank lines and '#' comments are skipped.
+ */
+public final class LoadGenerator {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    
+    /**
+     * What an operation calls
+     */
+    enum Kind {
+        SUGGEST, SELECT, ADD;
+        
+        String logName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+    
+    /**
+     * One call against the system
+     */
+    static final class Operation {
+        final Kind kind;
+        final String text;
+        final int frequency;
+        
+        Operation(Kind kind, String text, int frequency) {
+            this.kind = kind;
+            this.text = text;
+            this.frequency = frequency;
+        }
+        
+        String toLogLine() {
+            return kind.logName() + "\t" + text + (kind == Kind.ADD ? "\t" + frequency : "");
+        }
+    }
+    
+    /**
+     * The traffic: a deterministic sequence of operations, null once it is exhausted.
+     * Only ever called by one thread at a time.
+     */
+    interface OperationSource {
+        Operation next() throws IOException;
+    }
+    
+    /**
+     * Keystroke sessions over a synthetic dictionary. Its words are ranked by frequency,
+     * so a Zipf draw over ranks makes popular words the ones typed most often.
+     */
+    static final class SessionGenerator implements OperationSource {
+        private final SyntheticDictionary dictionary;
+        private final Random random;
+        private final double[] cumulative;
+        private final double selectShare;
+        private final double addShare;
+        private final Deque<Operation> session = new ArrayDeque<>();
+        
+        SessionGenerator(SyntheticDictionary dictionary, long seed, double zipfExponent,
+                         double selectShare, double addShare) {
+            this.dictionary = dictionary;
+            this.random = new Random(seed);
+            this.selectShare = selectShare;
+            this.addShare = addShare;
+            this.cumulative = new double[dictionary.size()];
+            double total = 0;
+            for (int rank = 0; rank < cumulative.length; rank++) {
+                total += 1 / Math.pow(rank + 1, zipfExponent);
+                cumulative[rank] = total;
+            }
+        }
+        
+        @Override
+        public Operation next() {
+            if (session.isEmpty()) {
+                startSession();
+            }
+            return session.poll();
+        }
+        
+        private void startSession() {
+            String word;
+            boolean novel = random.nextDouble() < addShare;
+            if (novel) {
+                word = newWord();
+            } else {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+                word = dictionary.words[Math.min(rank < 0 ? -rank - 1 : rank, cumulative.length - 1)];
+            }
+            
+            // Users stop typing somewhere along the word, usually once it is suggested
+            int typed = 1 + random.nextInt(word.length());
+            for (int length = 1; length <= typed; length++) {
+                session.add(new Operation(Kind.SUGGEST, word.substring(0, length), 0));
+            }
+            if (novel) {
+                session.add(new Operation(Kind.ADD, word, 1));
+            } else if (random.nextDouble() < selectShare) {
+                session.add(new Operation(Kind.SELECT, word, 0));
+            }
+        }
+        
+        private String newWord() {
+            StringBuilder word = new StringBuilder();
+            int length = 4 + random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            return word.toString();
+        }
+    }
+    
+    /**
+     * Operations read back from a log written by --record (or by hand)
+     */
+    static final class LogReplay implements OperationSource {
+        private final BufferedReader reader;
+        private long lineNumber;
+        
+        LogReplay(BufferedReader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public Operation next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                
+                String[] fields = line.split("\t");
+                try {
+                    Kind kind = Kind.valueOf(fields[0].trim().toUpperCase(Locale.ROOT));
+                    if (fields.length < (kind == Kind.ADD ? 3 : 2)) {
+                        throw new IllegalArgumentException("missing field");
+                    }
+                    int frequency = kind == Kind.ADD ? Integer.parseInt(fields[2].trim()) : 0;
+                    return new Operation(kind, fields[1], frequency);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("line " + lineNumber + ": not an operation: " + line, e);
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Hands out the operations in order, each with the time it is due
+     */
+    private static final class Schedule {
+        private final OperationSource source;
+        private final BufferedWriter recorder;
+        private final long start;
+        private final long end;
+        private final double intervalNanos;
+        private long issued;
+        private boolean exhausted;
+        
+        Schedule(OperationSource source, BufferedWriter recorder, long start, long end, double rate) {
+            this.source = source;
+            this.recorder = recorder;
+            this.start = start;
+            this.end = end;
+            this.intervalNanos = rate > 0 ? 1e9 / rate : 0;
+        }
+        
+        /**
+         * The next operation, with the time it is due in due[0], or null when the run is over
+         */
+        synchronized Operation next(long[] due) throws IOException {
+            if (exhausted) return null;
+            long time = intervalNanos > 0 ? start + (long) (issued * intervalNanos) : Math.max(start, System.nanoTime());
+            Operation operation = time < end ? source.next() : null;
+            if (operation == null) {
+                exhausted = true;
+                return null;
+            }
+            issued++;
+            if (recorder != null) {
+                recorder.write(operation.toLogLine());
+                recorder.newLine();
+            }
+            due[0] = time;
+            return operation;
+        }
+    }
+    
+    /**
+     * Latency and error counts of the measured part of the run, shared by all workers
+     */
+    private static final class Results {
+        final EnumMap<Kind, LatencyHistogram> latency = new EnumMap<>(Kind.class);
+        final EnumMap<Kind, LatencyHistogram> service = new EnumMap<>(Kind.class);
+        final AtomicLong errors = new AtomicLong();
+        final AtomicReference<Throwable> firstError = new AtomicReference<>();
+        final AtomicLong lastCompletion = new AtomicLong();
+        
+        Results() {
+            for (Kind kind : Kind.values()) {
+                latency.put(kind, new LatencyHistogram());
+                service.put(kind, new LatencyHistogram());
+            }
+        }
+        
+        long completed() {
+            long count = 0;
+            for (LatencyHistogram histogram : latency.values()) {
+                count += histogram.getCount();
+            }
+            return count;
+        }
+    }
+    
+    /**
+     * Collection counts and times and heap usage at one moment
+     */
+    private static final class JvmSnapshot {
+        final Map<String, long[]> collectors = new LinkedHashMap<>();
+        final long heapUsed;
+        final long heapCommitted;
+        
+        JvmSnapshot() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collectors.put(collector.getName(), new long[] {collector.getCollectionCount(), collector.getCollectionTime()});
+            }
+            heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            heapCommitted = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getCommitted();
+        }
+    }
+    
+    private LoadGenerator() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        long warmupNanos = TimeUnit.MILLISECONDS.toNanos((long) (1000 * Double.parseDouble(options.getOrDefault("warmup", "5"))));
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos((long) (1000 * Double.parseDouble(options.getOrDefault("duration", "20"))));
+        String systemKind = options.getOrDefault("system", "concurrent");
+        if (threads < 1) {
+            throw new IllegalArgumentException("--threads must be positive: " + threads);
+        }
+        if ("trie".equals(systemKind) && threads > 1) {
+            throw new IllegalArgumentException("--system=trie is not thread-safe; use --threads=1");
+        }
+        
+        SyntheticDictionary dictionary = SyntheticDictionary.of(Integer.parseInt(options.getOrDefault("words", "100000")), seed);
+        LocalShardCluster cluster = null;
+        AutocompleteSystem system;
+        if ("shards".equals(systemKind)) {
+            cluster = LocalShardCluster.start(Integer.parseInt(options.getOrDefault("shards", "4")),
+                                              Trie.DEFAULT_SUGGESTION_LIMIT);
+            system = AutocompleteSystem.connectShards(cluster.addresses());
+        } else {
+            system = createSystem(systemKind);
+        }
+        for (int i = 0; i < dictionary.size(); i++) {
+            system.addWord(dictionary.words[i], dictionary.frequencies[i]);
+        }
+        if (options.containsKey("cache")) {
+            system.enableSuggestionCache(Integer.parseInt(options.get("cache")));
+        }
+        
+        OperationSource source;
+        BufferedReader replay = null;
+        if (options.containsKey("replay")) {
+            replay = Files.newBufferedReader(Paths.get(options.get("replay")), StandardCharsets.UTF_8);
+            source = new LogReplay(replay);
+        } else {
+            source = new SessionGenerator(dictionary, seed,
+                    Double.parseDouble(options.getOrDefault("zipf", "1.0")),
+                    Double.parseDouble(options.getOrDefault("select", "0.3")),
+                    Double.parseDouble(options.getOrDefault("add", "0.01")));
+        }
+        BufferedWriter recorder = options.containsKey("record")
+                ? Files.newBufferedWriter(Paths.get(options.get("record")), StandardCharsets.UTF_8)
+                : null;
+        
+        ExecutorService workers = options.containsKey("virtual")
+                ? virtualThreadExecutor()
+                : Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + warmupNanos;
+        Schedule schedule = new Schedule(source, recorder, start, measureFrom + durationNanos, rate);
+        Results results = new Results();
+        for (int i = 0; i < threads; i++) {
+            workers.execute(() -> runWorker(system, schedule, results, measureFrom));
+        }
+        workers.shutdown();
+        
+        // Collections and heap are compared from the end of the warm-up on
+        waitUntil(measureFrom);
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        JvmSnapshot before = new JvmSnapshot();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        JvmSnapshot after = new JvmSnapshot();
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        if (replay != null) {
+            replay.close();
+        }
+        system.close();
+        if (cluster != null) {
+            cluster.close();
+        }
+        
+        double seconds = Math.max(0, results.lastCompletion.get() - measureFrom) / 1e9;
+        String report = report(options, results, seconds, before, after, peakHeap);
+        System.out.print(report);
+        if (options.containsKey("json")) {
+            Files.write(Paths.get(options.get("json")), json(options, results, seconds, before, after, peakHeap)
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        
+        Throwable firstError = results.firstError.get();
+        if (firstError != null) {
+            System.err.println("First error: " + firstError);
+        }
+        if (options.containsKey("max-p99-ms")) {
+            double limitMillis = Double.parseDouble(options.get("max-p99-ms"));
+            double p99Millis = results.latency.get(Kind.SUGGEST).getValueAtPercentile(99) / 1e6;
+            if (p99Millis > limitMillis) {
+                System.err.printf(Locale.ROOT, "suggest p99 %.3f ms is above the limit of %.3f ms%n", p99Millis, limitMillis);
+                System.exit(1);
+            }
+        }
+    }
+    
+    private static void runWorker(AutocompleteSystem system, Schedule schedule, Results results, long measureFrom) {
+        long[] due = new long[1];
+        try {
+            Operation operation;
+            while ((operation = schedule.next(due)) != null) {
+                waitUntil(due[0]);
+                long begin = System.nanoTime();
+                try {
+                    execute(system, operation);
+                } catch (RuntimeException e) {
+                    results.errors.incrementAndGet();
+                    results.firstError.compareAndSet(null, e);
+                }
+                long done = System.nanoTime();
+                if (due[0] >= measureFrom) {
+                    results.latency.get(operation.kind).record(done - due[0]);
+                    results.service.get(operation.kind).record(done - begin);
+                    results.lastCompletion.accumulateAndGet(done, Math::max);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static void execute(AutocompleteSystem system, Operation operation) {
+        switch (operation.kind) {
+            case SUGGEST:
+                system.getSuggestions(operation.text);
+                break;
+            case SELECT:
+                system.selectSuggestion(operation.text);
+                break;
+            case ADD:
+                system.addWord(operation.text, operation.frequency);
+                break;
+            default:
+                throw new AssertionError(operation.kind);
+        }
+    }
+    
+    /**
+     * Park until the given System.nanoTime, spinning for the last stretch, which parking
+     * cannot hit precisely
+     */
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 100_000) {
+                LockSupport.parkNanos(remaining - 50_000);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+    
+    private static AutocompleteSystem createSystem(String kind) {
+        switch (kind) {
+            case "concurrent":
+                return AutocompleteSystem.concurrent(Trie.DEFAULT_SUGGESTION_LIMIT);
+            case "snapshot":
+                return AutocompleteSystem.snapshotting(Trie.DEFAULT_SUGGESTION_LIMIT, 1000);
+            case "trie":
+                return new AutocompleteSystem(Trie.DEFAULT_SUGGESTION_LIMIT);
+            default:
+                throw new IllegalArgumentException("--system must be concurrent, snapshot, shards or trie: " + kind);
+        }
+    }
+    
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor, looked up at run time because the build
+     * targets Java 17
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("--virtual needs Java 21 or later, running on " + Runtime.version());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual threads", e);
+        }
+    }
+    
+    private static Map<String, String> parseOptions(String[] args) {
+        Set<String> known = new HashSet<>(Arrays.asList("words", "seed", "zipf", "select", "add", "replay",
+                "record", "system", "shards", "cache", "threads", "virtual", "rate", "warmup", "duration", "json", "max-p99-ms"));
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Options look like --name=value: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            String name = equals < 0 ? arg.substring(2) : arg.substring(2, equals);
+            if (!known.contains(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + "; see the LoadGenerator class comment");
+            }
+            options.put(name, equals < 0 ? "" : arg.substring(equals + 1));
+        }
+        return options;
+    }
+    
+    private static String report(Map<String, String> options, Results results, double seconds,
+                                 JvmSnapshot before, JvmSnapshot after, long peakHeap) {
+        StringBuilder text = new StringBuilder();
+        long completed = results.completed();
+        text.append(String.format(Locale.ROOT, "%d operations in %.1f s: %.0f ops/s (%s), %d errors%n",
+                completed, seconds, seconds > 0 ? completed / seconds : 0,
+                Double.parseDouble(options.getOrDefault("rate", "0")) > 0
+                        ? "target " + options.get("rate") + " ops/s, open loop" : "closed loop",
+                results.errors.get()));
+        
+        text.append(String.format(Locale.ROOT, "%-8s %-8s %10s", "kind", "measure", "count"));
+        for (double percentile : PERCENTILES) {
+            text.append(String.format(Locale.ROOT, " %9s", "p" + format(percentile)));
+        }
+        text.append(String.format(Locale.ROOT, " %9s   (microseconds)%n", "max"));
+        for (Kind kind : Kind.values()) {
+            appendRow(text, kind.logName(), "latency", results.latency.get(kind));
+            appendRow(text, kind.logName(), "service", results.service.get(kind));
+        }
+        
+        for (Map.Entry<String, long[]> collector : after.collectors.entrySet()) {
+            long[] previous = before.collectors.getOrDefault(collector.getKey(), new long[2]);
+            text.append(String.format(Locale.ROOT, "GC %-24s %6d collections %8d ms%n", collector.getKey(),
+                    collector.getValue()[0] - previous[0], collector.getValue()[1] - previous[1]));
+        }
+        text.append(String.format(Locale.ROOT, "Heap used %d MB -> %d MB, peak %d MB, committed %d MB%n",
+                before.heapUsed >> 20, after.heapUsed >> 20, peakHeap >> 20, after.heapCommitted >> 20));
+        return text.toString();
+    }
+    
+    private static void appendRow(StringBuilder text, String kind, String measure, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) return;
+        text.append(String.format(Locale.ROOT, "%-8s %-8s %10d", kind, measure, histogram.getCount()));
+        for (double percentile : PERCENTILES) {
+            text.append(String.format(Locale.ROOT, " %9.1f", histogram.getValueAtPercentile(percentile) / 1e3));
+        }
+        text.append(String.format(Locale.ROOT, " %9.1f%n", histogram.getMaxNanos() / 1e3));
+    }
+    
+    private static String json(Map<String, String> options, Results results, double seconds,
+                               JvmSnapshot before, JvmSnapshot after, long peakHeap) {
+        StringBuilder json = new StringBuilder("{\n");
+        long completed = results.completed();
+        json.append(String.format(Locale.ROOT, "  \"targetRate\": %s, \"seconds\": %.3f, \"operations\": %d, "
+                        + "\"throughput\": %.1f, \"errors\": %d,%n",
+                options.getOrDefault("rate", "0"), seconds, completed, seconds > 0 ? completed / seconds : 0,
+                results.errors.get()));
+        json.append("  \"latencyNanos\": {");
+        Kind[] kinds = Kind.values();
+        for (int i = 0; i < kinds.length; i++) {
+            LatencyHistogram latency = results.latency.get(kinds[i]);
+            LatencyHistogram service = results.service.get(kinds[i]);
+            json.append(String.format(Locale.ROOT, "%n    \"%s\": {\"count\": %d", kinds[i].logName(), latency.getCount()));
+            for (double percentile : PERCENTILES) {
+                json.append(String.format(Locale.ROOT, ", \"p%s\": %d, \"serviceP%s\": %d", format(percentile),
+                        latency.getValueAtPercentile(percentile), format(percentile), service.getValueAtPercentile(percentile)));
+            }
+            json.append(String.format(Locale.ROOT, ", \"max\": %d}%s", latency.getMaxNanos(), i + 1 < kinds.length ? "," : ""));
+        }
+        json.append("\n  },\n  \"gc\": {");
+        int i = 0;
+        for (Map.Entry<String, long[]> collector : after.collectors.entrySet()) {
+            long[] previous = before.collectors.getOrDefault(collector.getKey(), new long[2]);
+            json.append(String.format(Locale.ROOT, "%n    \"%s\": {\"collections\": %d, \"millis\": %d}%s", collector.getKey(),
+                    collector.getValue()[0] - previous[0], collector.getValue()[1] - previous[1],
+                    ++i < after.collectors.size() ? "," : ""));
+        }
+        json.append(String.format(Locale.ROOT, "%n  },%n  \"heapBytes\": {\"before\": %d, \"after\": %d, \"peak\": %d, \"committed\": %d}%n}%n",
+                before.heapUsed, after.heapUsed, peakHeap, after.heapCommitted));
+        return json.toString();
+    }
+    
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
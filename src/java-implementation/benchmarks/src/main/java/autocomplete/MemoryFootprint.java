@@ -0,0 +1,60 @@
+package autocomplete;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Retained heap per word for each index kind, measured as used heap after repeated full
+ * GCs with and without the built index. The dictionary's word strings stay reachable in
+ * both measurements, so they are excluded. JMH cannot measure footprint, so this is a
+ * plain main that writes one JSON object per index kind:
+ * 
+ *   java -cp benchmarks.jar autocomplete.MemoryFootprint [words] [output.json]
+ */
+public final class MemoryFootprint {
+    // Keeps the index reachable until the measurement is taken
+    private static Object retained;
+    
+    private MemoryFootprint() {
+    }
+    
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        SyntheticDictionary dictionary = SyntheticDictionary.of(size, 42);
+        
+        StringBuilder json = new StringBuilder("[\n");
+        long baseline = usedHeap();
+        IndexKind[] kinds = IndexKind.values();
+        for (int i = 0; i < kinds.length; i++) {
+            retained = dictionary.build(kinds[i], Trie.DEFAULT_SUGGESTION_LIMIT);
+            long bytes = usedHeap() - baseline;
+            retained = null;
+            
+            json.append(String.format(Locale.ROOT,
+                    "  {\"index\": \"%s\", \"words\": %d, \"retainedBytes\": %d, \"bytesPerWord\": %.1f}%s%n",
+                    kinds[i], size, bytes, (double) bytes / size, i + 1 < kinds.length ? "," : ""));
+        }
+        json.append("]\n");
+        
+        if (args.length > 1) {
+            Files.write(Paths.get(args[1]), json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        System.out.print(json);
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,59 @@
+package autocomplete;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * search() latency by prefix length and dictionary size. Each call takes the next of 4096
+ * pre-drawn prefixes, so branch predictors and caches do not see one prefix repeated.
+ * searchIntoSink is the allocation-free variant; run with -prof gc to compare
+ * gc.alloc.rate.norm (bytes per call).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class SearchBenchmark {
+    private static final int PREFIXES = 4096;
+    
+    @Param({"10000", "100000", "1000000"})
+    public int dictionarySize;
+    
+    @Param({"1", "2", "3", "5"})
+    public int prefixLength;
+    
+    @Param({"TRIE_HASH_MAP_TOP_K", "TRIE_HASH_MAP_BEST_FIRST", "TRIE_SORTED_ARRAY_BEST_FIRST", "RADIX", "CONCURRENT", "WORD_AUTOMATON"})
+    public IndexKind index;
+    
+    private PrefixIndex trie;
+    private String[] prefixes;
+    private ResultSink sink;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticDictionary dictionary = SyntheticDictionary.of(dictionarySize, 42);
+        trie = dictionary.build(index, Trie.DEFAULT_SUGGESTION_LIMIT);
+        prefixes = dictionary.prefixes(prefixLength, PREFIXES, 7);
+        sink = new ResultSink(Trie.DEFAULT_SUGGESTION_LIMIT);
+    }
+    
+    @Benchmark
+    public List<WordFrequency> search() {
+        String prefix = prefixes[next];
+        next = (next + 1) & (PREFIXES - 1);
+        return trie.search(prefix);
+    }
+    
+    @Benchmark
+    public ResultSink searchIntoSink() {
+        String prefix = prefixes[next];
+        next = (next + 1) & (PREFIXES - 1);
+        trie.search(prefix, sink);
+        return sink;
+    }
+}
@@ -0,0 +1,89 @@
+package autocomplete;
+
+import java.util.*;
+
+/**
+ * Deterministic synthetic vocabulary for benchmarks: distinct words of 3-12 letters drawn
+ * from English letter frequencies, with Zipf-distributed frequencies (rank r gets about
+ * 1,000,000 / r). The same size and seed always produce the same words in the same order.
+ */
+final class SyntheticDictionary {
+    private static final String LETTERS =
+            "eeeeeeeeeeeetttttttttaaaaaaaaoooooooiiiiiiinnnnnnnsssssshhhhhhrrrrrrddddllllcccuuummwwffggyyppbbvkjxqz";
+    private static final Map<Long, SyntheticDictionary> CACHE = new HashMap<>();
+    
+    final String[] words;
+    final int[] frequencies;
+    
+    private SyntheticDictionary(String[] words, int[] frequencies) {
+        this.words = words;
+        this.frequencies = frequencies;
+    }
+    
+    /**
+     * The dictionary of size words for seed, generated once per JVM
+     */
+    static synchronized SyntheticDictionary of(int size, long seed) {
+        return CACHE.computeIfAbsent(seed * 31 + size, key -> generate(size, seed));
+    }
+    
+    private static SyntheticDictionary generate(int size, long seed) {
+        Random random = new Random(seed);
+        Set<String> distinct = new LinkedHashSet<>(size * 2);
+        StringBuilder word = new StringBuilder();
+        while (distinct.size() < size) {
+            word.setLength(0);
+            int length = 3 + random.nextInt(10);
+            for (int i = 0; i < length; i++) {
+                word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+            distinct.add(word.toString());
+        }
+        
+        String[] words = distinct.toArray(new String[0]);
+        int[] frequencies = new int[size];
+        for (int rank = 1; rank <= size; rank++) {
+            frequencies[rank - 1] = Math.max(1, 1_000_000 / rank);
+        }
+        // Words are generated in random order, so rank order does not follow the alphabet
+        return new SyntheticDictionary(words, frequencies);
+    }
+    
+    int size() {
+        return words.length;
+    }
+    
+    /**
+     * count prefixes of exactly length characters, taken from random words long enough
+     * to have one, so every prefix has at least one completion
+     */
+    String[] prefixes(int length, int count, long seed) {
+        Random random = new Random(seed);
+        String[] prefixes = new String[count];
+        for (int i = 0; i < count; ) {
+            String word = words[random.nextInt(words.length)];
+            if (word.length() >= length) {
+                prefixes[i++] = word.substring(0, length);
+            }
+        }
+        return prefixes;
+    }
+    
+    /**
+     * An index of the given kind holding every word with its frequency
+     */
+    PrefixIndex build(IndexKind kind, int suggestionLimit) {
+        if (kind == IndexKind.WORD_AUTOMATON) {
+            List<WordFrequency> entries = new ArrayList<>(words.length);
+            for (int i = 0; i < words.length; i++) {
+                entries.add(new WordFrequency(words[i], frequencies[i]));
+            }
+            return new WordAutomaton(entries, suggestionLimit);
+        }
+        PrefixIndex index = kind.create(suggestionLimit);
+        for (int i = 0; i < words.length; i++) {
+            index.insert(words[i], frequencies[i]);
+        }
+        return index;
+    }
+}
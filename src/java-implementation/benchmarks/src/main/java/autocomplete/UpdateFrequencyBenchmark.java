@@ -0,0 +1,84 @@
+package autocomplete;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * updateFrequency throughput with 4 threads sharing one thread-safe index. hotWords
+ * controls contention: 1 means every thread bumps the same word (and the same path),
+ * larger values spread updates over the most frequent words.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(4)
+@State(Scope.Benchmark)
+public class UpdateFrequencyBenchmark {
+    @Param({"1", "64", "10000"})
+    public int hotWords;
+    
+    @Param({"CONCURRENT", "SYNCHRONIZED_TRIE"})
+    public String index;
+    
+    private PrefixIndex trie;
+    private String[] targets;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticDictionary dictionary = SyntheticDictionary.of(100_000, 42);
+        if (index.equals("CONCURRENT")) {
+            trie = dictionary.build(IndexKind.CONCURRENT, Trie.DEFAULT_SUGGESTION_LIMIT);
+        } else {
+            trie = new SynchronizedIndex(dictionary.build(IndexKind.TRIE_HASH_MAP_TOP_K, Trie.DEFAULT_SUGGESTION_LIMIT));
+        }
+        targets = new String[hotWords];
+        System.arraycopy(dictionary.words, 0, targets, 0, hotWords);
+    }
+    
+    @Benchmark
+    public void updateFrequency() {
+        String word = targets[ThreadLocalRandom.current().nextInt(targets.length)];
+        trie.updateFrequency(word, 1);
+    }
+    
+    /**
+     * Baseline: the single-threaded Trie behind one lock
+     */
+    static final class SynchronizedIndex implements PrefixIndex {
+        private final PrefixIndex delegate;
+        
+        SynchronizedIndex(PrefixIndex delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public synchronized void insert(String word, int frequency) {
+            delegate.insert(word, frequency);
+        }
+        
+        @Override
+        public synchronized void updateFrequency(String word, int increment) {
+            delegate.updateFrequency(word, increment);
+        }
+        
+        @Override
+        public synchronized List<WordFrequency> search(String prefix) {
+            return delegate.search(prefix);
+        }
+        
+        @Override
+        public synchronized List<WordFrequency> getAllWords() {
+            return delegate.getAllWords();
+        }
+        
+        @Override
+        public int getSuggestionLimit() {
+            return delegate.getSuggestionLimit();
+        }
+    }
+}